@@ -0,0 +1,51 @@
+package bot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the queue used by the pathfinding.
+ * Sizes above 1024 elements make the queue grow using doubleCapacity.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomQueueBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int elements;
+
+    private final CustomQueue queue = new CustomQueue();
+
+    /** Fills a new queue and then drains it */
+    @Benchmark
+    public int fillAndDrain() {
+        CustomQueue q = new CustomQueue();
+        for (int i = 0; i < elements; i++) {
+            q.addLast(i);
+        }
+
+        int sum = 0;
+        while (q.head != q.tail) {
+            sum += q.pollFirst();
+        }
+        return sum;
+    }
+
+    /** Adds two elements for every element removed, like a BFS wavefront growing, using a queue that has already grown */
+    @Benchmark
+    public int interleaved() {
+        queue.head = queue.tail = 0;
+        queue.addLast(0);
+        int sum = 0;
+        for (int i = 0; i < elements; i++) {
+            sum += queue.pollFirst();
+            queue.addLast(i);
+            queue.addLast(i + 1);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,52 @@
+package bot;
+
+import battlecode.common.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for the archon's search over the pathfinding grid.
+ * Each invocation runs one complete search from scratch from the enemy archons and broadcasts the changed results,
+ * either the exact search or the breadth first search that is broadcast before it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathfindingBenchmark {
+    @Param({"30", "60", "100"})
+    public int mapSize;
+
+    /** Number of blocked nodes */
+    @Param({"0", "100", "1000"})
+    public int units;
+
+    private Archon archon;
+
+    @Setup
+    public void setup() throws GameActionException {
+        OfflineWorld world = RandomWorlds.create(RobotType.ARCHON, 0, 0, 0, mapSize, 1234);
+        world.install();
+        RandomWorlds.exploreMap(world, units, 1234);
+        archon = new Archon();
+
+        // The first call allocates the search state
+        archon.pathfinding();
+    }
+
+    @Benchmark
+    public void pathfinding() throws GameActionException {
+        archon.startFullSearch();
+        archon.pathfinding();
+    }
+
+    @Benchmark
+    public void waveSearch() throws GameActionException {
+        archon.startWaveSearch();
+        archon.expandWaves();
+        archon.broadcastWaveResult();
+    }
+}
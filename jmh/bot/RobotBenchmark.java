@@ -0,0 +1,91 @@
+package bot;
+
+import battlecode.common.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the geometry kernels used when avoiding bullets.
+ * Each invocation evaluates the kernel for 16 candidate moves around the robot, like one pass of moveToAvoidBullets does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RobotBenchmark {
+    static final int CANDIDATE_MOVES = 16;
+
+    @Param({"0", "10", "50", "100"})
+    public int bullets;
+
+    @Param({"0", "5", "20"})
+    public int units;
+
+    @Param({"30", "100"})
+    public int mapSize;
+
+    private BulletInfo[] nearbyBullets;
+    private RobotInfo[] nearbyUnits;
+    private int bulletsToConsider;
+    private final MapLocation[] candidates = new MapLocation[CANDIDATE_MOVES];
+    private MapLocation target;
+
+    @Setup
+    public void setup() throws GameActionException {
+        OfflineWorld world = RandomWorlds.create(RobotType.SOLDIER, bullets, units, 10, mapSize, 1234);
+        OfflineRobotController rc = world.install();
+        MapLocation myLocation = rc.getLocation();
+
+        nearbyBullets = rc.senseNearbyBullets();
+        nearbyUnits = rc.senseNearbyRobots();
+        target = world.archonsB.get(0);
+
+        // Same preprocessing as moveToAvoidBullets, but without discarding bullets that cannot hit us
+        bulletsToConsider = Math.min(nearbyBullets.length, Robot.bulletX.length);
+        for (int i = 0; i < bulletsToConsider; i++) {
+            BulletInfo bullet = nearbyBullets[i];
+            Robot.bulletX[i] = bullet.location.x;
+            Robot.bulletY[i] = bullet.location.y;
+            Robot.bulletDx[i] = bullet.dir.getDeltaX(1);
+            Robot.bulletDy[i] = bullet.dir.getDeltaY(1);
+            Robot.bulletDamage[i] = bullet.damage;
+            Robot.bulletSpeed[i] = bullet.speed;
+        }
+
+        for (int i = 0; i < CANDIDATE_MOVES; i++) {
+            candidates[i] = myLocation.add(2 * (float)Math.PI * i / CANDIDATE_MOVES, RobotType.SOLDIER.strideRadius);
+        }
+    }
+
+    @Benchmark
+    public float estimatedDamageAtPosition() {
+        float total = 0;
+        for (MapLocation loc : candidates) {
+            total += Robot.getEstimatedDamageAtPosition(loc.x, loc.y, bulletsToConsider, Robot.bulletX, Robot.bulletY, Robot.bulletDx, Robot.bulletDy, Robot.bulletDamage, Robot.bulletSpeed, null);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int bulletCanHitUs() {
+        int count = 0;
+        for (MapLocation loc : candidates) {
+            for (int i = 0; i < bulletsToConsider; i++) {
+                if (Robot.bulletCanHitUs(loc, nearbyBullets[i])) count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public float secondaryMovementScore() {
+        float total = 0;
+        for (MapLocation loc : candidates) {
+            total += Robot.getSecondaryMovementScore(loc, null, nearbyUnits, target);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,76 @@
+package bot;
+
+import battlecode.common.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for the scout's movement scoring.
+ * Each invocation scores 16 candidate moves around the scout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoutBenchmark {
+    @Param({"0", "10", "50", "100"})
+    public int bullets;
+
+    @Param({"0", "5", "20"})
+    public int units;
+
+    @Param({"30", "100"})
+    public int mapSize;
+
+    private Scout scout;
+    private RobotInfo[] nearbyUnits;
+    private int bulletsToConsider;
+    private float[] bulletImpactDistances;
+    private TreeInfo bestTree;
+    private MapLocation target;
+    private final MapLocation[] candidates = new MapLocation[RobotBenchmark.CANDIDATE_MOVES];
+
+    @Setup
+    public void setup() throws GameActionException {
+        OfflineWorld world = RandomWorlds.create(RobotType.SCOUT, bullets, units, 10, mapSize, 1234);
+        OfflineRobotController rc = world.install();
+        MapLocation myLocation = rc.getLocation();
+        scout = new Scout();
+
+        BulletInfo[] nearbyBullets = rc.senseNearbyBullets();
+        nearbyUnits = rc.senseNearbyRobots();
+        TreeInfo[] trees = rc.senseNearbyTrees();
+        bestTree = trees.length > 0 ? trees[0] : null;
+        target = world.archonsB.get(0);
+
+        bulletsToConsider = Math.min(nearbyBullets.length, Robot.bulletX.length);
+        bulletImpactDistances = new float[bulletsToConsider];
+        for (int i = 0; i < bulletsToConsider; i++) {
+            BulletInfo bullet = nearbyBullets[i];
+            Robot.bulletX[i] = bullet.location.x;
+            Robot.bulletY[i] = bullet.location.y;
+            Robot.bulletDx[i] = bullet.dir.getDeltaX(1);
+            Robot.bulletDy[i] = bullet.dir.getDeltaY(1);
+            Robot.bulletDamage[i] = bullet.damage;
+            Robot.bulletSpeed[i] = bullet.speed;
+            bulletImpactDistances[i] = 1000f;
+        }
+
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = myLocation.add(2 * (float)Math.PI * i / candidates.length, RobotType.SCOUT.strideRadius);
+        }
+    }
+
+    @Benchmark
+    public float positionScore() {
+        float total = 0;
+        for (MapLocation loc : candidates) {
+            total += scout.getPositionScore(loc, nearbyUnits, bulletsToConsider, Robot.bulletX, Robot.bulletY, Robot.bulletDx, Robot.bulletDy,
+                    Robot.bulletDamage, Robot.bulletSpeed, bulletImpactDistances, bestTree, target);
+        }
+        return total;
+    }
+}
@@ -6,6 +6,11 @@ class Archon extends Robot {
 
     static final int STOP_SPENDING_AT_TIME = 100;
 
+    static final int PROFILE_HIRE_GARDENER = Profiler.register("tryHireGardener");
+    static final int PROFILE_PATHFINDING = Profiler.register("pathfinding");
+    static final int PROFILE_BROADCAST_PATHFINDING_RESULT = Profiler.register("broadcastPathfindingResult");
+    static final int PROFILE_WAVE_SEARCH = Profiler.register("waveSearch");
+
     int archonIndex;
 
     boolean everBuiltAGardener = false;
@@ -79,7 +84,11 @@ class Archon extends Robot {
         if (rc.hasRobotBuildRequirements(RobotType.GARDENER) && isGoodArchon && mayBuildGardener && !saveForTank) {
             // Spend more time trying to find a position to build a gardener on if we haven't built any gardeners yet
             int iterations = gardenerCount == 0 ? 100 : 20;
+            Profiler.begin(PROFILE_HIRE_GARDENER);
+            Overruns.begin(Overruns.HIRE_GARDENER);
             boolean couldBuild = tryHireGardener(iterations);
+            Overruns.end();
+            Profiler.end();
 
             if (couldBuild) {
                 everBuiltAGardener = true;
@@ -105,13 +114,24 @@ class Archon extends Robot {
         MapLocation moveTo = moveToAvoidBullets(null, bullets, units);
         if (moveTo != null)
             rc.move(moveTo);
-        //pathfinding();
+        if (maintainsPathfinding()) pathfinding();
 
         yieldAndDoBackgroundTasks();
 
         debug_resign();
     }
 
+    /**
+     * True if this is the archon with the lowest index that is still alive.
+     * Only that archon maintains the pathfinding results so that they are consistent.
+     */
+    boolean maintainsPathfinding() throws GameActionException {
+        for (int i = 0; i < archonIndex; i++) {
+            if (rc.readBroadcast(ARCHON_BUILD_SCORE + 2 * i + 1) >= rc.getRoundNum() - 2) return false;
+        }
+        return true;
+    }
+
     public boolean trySacrifice() throws GameActionException {
         // If the game has been running for a while and no archon seem to have been able to build a gardener
         // then try to build a gardener in any direction and destroy this archon
@@ -205,221 +225,1058 @@ class Archon extends Robot {
         return cnt;
     }
 
-    private static final CustomQueue queue = new CustomQueue();
-    private static final CustomQueue secondaryQueue = new CustomQueue();
-    private static final CustomQueue tertiaryQueue = new CustomQueue();
-
-    private static int[] explored = null;
-    private static int[] costs = null;
-    private static int[] parents = null;
+    /** Cost of moving into a node that is known to be traversable */
+    static final int COST_FREE = 2;
+    /**
+     * Added to the cost of moving into a node that is not blocked for every level of danger of its chunk.
+     * It is even so that only nodes in chunks that have not been fully explored have odd weights.
+     */
+    static final int COST_DANGER = 4;
+    /** Cost of moving into a node in a chunk that has not been fully explored yet */
+    static final int COST_UNKNOWN = 3;
+    /** Cost of moving into a node that a gardener has reserved for planting a tree */
+    static final int COST_RESERVED = 8;
+    /** Cost of moving into a blocked node, it may become free later */
+    static final int COST_BLOCKED = 200;
+
+    private static final int CHUNKS_PER_ROW = PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE;
+    private static final int CHUNK_COUNT = CHUNKS_PER_ROW * CHUNKS_PER_ROW;
+
+    /**
+     * Search state of each node packed into one int. Bits 23-30 are the generation of the search that reached it,
+     * bits 2-22 the cost of its path plus one (0 if it can never be reached) and bits 0-1 the direction it was
+     * reached from. The cost can not overflow, even a path through every node costs less than 2^21.
+     * A node has been reached by the current search if its generation is pathfindingIndex.
+     * The border has a generation above every search so that it is never reached.
+     */
+    private static int[] nodeStates = null;
+    private static final int GENERATION_SHIFT = 23;
+    private static final int COST_SHIFT = 2;
+    private static final int COST_MASK = 0x1FFFFF << COST_SHIFT;
+    private static final int BORDER_GENERATION = 0xFF;
+    /** Bytecodes that must be left in a round to allocate the search state in it */
+    private static final int ALLOCATION_BYTECODES = 10000;
+    /** Cost of moving into each node, 0 if it has not been calculated from the chunk words yet */
+    private static int[] weights = null;
     private static int[] neighbourOffsets = null;
     private static int pathfindingIndex = 0;
 
-    void resetPathfinding() {
-        pathfindingIndex++;
+    // Bucket queue with one bucket for every cost. Each bucket is a linked list of entries, the entries
+    // are allocated from a pool which is reused whenever the queue becomes empty. A node is added again
+    // when a cheaper path to it is found, the old entry is skipped when it is popped.
+    private static int[] bucketHeads = null;
+    private static int[] entryNodes = null;
+    private static int[] entryNext = null;
+    private static int entries = 0;
+    private static int popped = 0;
+    /** All buckets below this one are empty */
+    private static int bucket = Integer.MAX_VALUE;
+
+    /** Chunk words that the current search is based on */
+    private static int[] chunkWords = null;
+    /** Reserved nodes of each chunk (from PATHFINDING_TREE) that the current search is based on */
+    private static int[] reservedWords = null;
+    /** Danger level of each chunk (from PATHFINDING_DANGER) that the current search is based on */
+    private static int[] dangerLevels = null;
+    /** Chunks with a danger level above 0, they are checked for decay by checkDangerDecay */
+    private static int[] dangerChunks = null;
+    private static int dangerCount = 0;
+    /** Number of chunks read so far when all chunk words have to be read again */
+    private static int chunksRead = CHUNK_COUNT;
+    /** Last broadcast value of each pathfinding result word */
+    private static int[] resultWords = null;
+    /** Last broadcast value of each word of diagonal bits, see broadcastDiagonals */
+    private static int[] diagonalWords = null;
+    /** Diagonal bits of the chunk packed by the last call to pathfindingResultWord */
+    static int resultDiagonals;
+    /** Number of entries in the chunk change log that have been applied to the search */
+    private static int changesSeen = 0;
+    private static final int[] seedNodes = new int[NUMBER_OF_TARGETS + GameConstants.NUMBER_OF_ARCHONS_MAX];
+    private static int seedCount = 0;
+    /** True while searching from scratch, in which case the whole result is broadcast when the search is done */
+    private static boolean fullSearch = false;
+    /** Next chunk row to broadcast when broadcasting the whole result */
+    private static int broadcastRow = 0;
+    /** Next chunk row to add the diagonal steps to after the whole result has been broadcast, CHUNKS_PER_ROW when done */
+    private static int diagonalRow = CHUNKS_PER_ROW;
+    /** Nodes whose parent has changed while repairing the search */
+    private static final CustomQueue changedNodes = new CustomQueue();
+    /** Chunks containing changed nodes which have not been broadcast yet */
+    private static final CustomQueue changedChunks = new CustomQueue();
+    private static boolean[] chunkChanged = null;
+    /** Nodes removed from the search whose children have not been removed yet */
+    private static final CustomQueue invalidated = new CustomQueue();
+    private static int invalidatedNodes = 0;
+    /** If a repair removes more nodes than this it is cheaper to search from scratch */
+    private static final int MAX_INVALIDATED_NODES = 500;
+    /** True if the current repair should be abandoned in favor of a new search */
+    private static boolean restartSearch = false;
+    /** Nodes in unexplored chunks outside these bounds are outside the map */
+    private static int minNodeX, maxNodeX, minNodeY, maxNodeY;
+
+    void allocatePathfinding() throws GameActionException {
+        nodeStates = new int[PATHFINDING_WORLD_WIDTH * PATHFINDING_WORLD_WIDTH];
+        pathfindingIndex = 0;
+        weights = new int[PATHFINDING_WORLD_WIDTH * PATHFINDING_WORLD_WIDTH];
+        chunkWords = new int[CHUNK_COUNT];
+        reservedWords = new int[CHUNK_COUNT];
+        dangerLevels = new int[CHUNK_COUNT];
+        dangerChunks = new int[CHUNK_COUNT];
+        dangerCount = 0;
+        resultWords = new int[CHUNK_COUNT];
+        chunkChanged = new boolean[CHUNK_COUNT];
+        diagonalWords = new int[(CHUNK_COUNT + 1) / 2];
+        // Another archon may have maintained the results before this one
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            resultWords[i] = rc.readBroadcast(PATHFINDING_RESULT_TO_ENEMY_ARCHON + i);
+        }
+        for (int i = 0; i < diagonalWords.length; i++) {
+            diagonalWords[i] = rc.readBroadcast(PATHFINDING_RESULT_DIAGONALS + i);
+        }
+
+        bucketHeads = new int[1024];
+        for (int i = 0; i < bucketHeads.length; i++) {
+            bucketHeads[i] = -1;
+        }
+        entryNodes = new int[4096];
+        entryNext = new int[4096];
+        entries = popped = 0;
+        bucket = Integer.MAX_VALUE;
+        chunksRead = 0;
+        waveField = -1;
+        fieldWords = new int[FlowFields.FIELD_COUNT][];
+        fieldWords[FlowFields.ENEMY_ARCHONS] = resultWords;
+        FlowFields.reset();
+
+        // Mark the borders of the world as reached by a later search to prevent
+        // us from going out of bounds (they will never be traversable anyway)
+        int border = BORDER_GENERATION << GENERATION_SHIFT;
+        for (int i = 0; i < PATHFINDING_WORLD_WIDTH; i++) {
+            nodeStates[i * PATHFINDING_WORLD_WIDTH] = border;
+            nodeStates[i * PATHFINDING_WORLD_WIDTH + PATHFINDING_WORLD_WIDTH - 1] = border;
+            nodeStates[i] = border;
+            nodeStates[(PATHFINDING_WORLD_WIDTH - 1) * PATHFINDING_WORLD_WIDTH + i] = border;
+        }
+
+        neighbourOffsets = new int[4];
+        for (int i = 0; i < 4; i++) {
+            neighbourOffsets[i] = dy[i] * PATHFINDING_WORLD_WIDTH + dx[i];
+        }
+    }
+
+    /** Adds a node to the bucket queue */
+    static void push(int node, int cost) {
+        if (entries == entryNodes.length) growEntries();
+        if (cost >= bucketHeads.length) growBuckets(cost);
+        if (cost < bucket) bucket = cost;
+        entryNodes[entries] = node;
+        entryNext[entries] = bucketHeads[cost];
+        bucketHeads[cost] = entries++;
     }
 
-    void addPathfindingseed(MapLocation seed) {
-        if (explored == null) {
-            // This will take some time
-            explored = new int[PATHFINDING_WORLD_WIDTH * PATHFINDING_WORLD_WIDTH];
-            costs = new int[PATHFINDING_WORLD_WIDTH * PATHFINDING_WORLD_WIDTH];
-            parents = new int[PATHFINDING_WORLD_WIDTH * PATHFINDING_WORLD_WIDTH];
+    static void growEntries() {
+        int[] nodes = new int[entryNodes.length * 2];
+        int[] next = new int[nodes.length];
+        System.arraycopy(entryNodes, 0, nodes, 0, entries);
+        System.arraycopy(entryNext, 0, next, 0, entries);
+        entryNodes = nodes;
+        entryNext = next;
+    }
+
+    static void growBuckets(int cost) {
+        int[] heads = new int[Math.max(bucketHeads.length * 2, cost + 1)];
+        System.arraycopy(bucketHeads, 0, heads, 0, bucketHeads.length);
+        for (int i = bucketHeads.length; i < heads.length; i++) {
+            heads[i] = -1;
+        }
+        bucketHeads = heads;
+    }
 
-            // Mark the borders of the world as always being explored to prevent
-            // us from going out of bounds (they will never be traversable anyway)
-            for (int i = 0; i < PATHFINDING_WORLD_WIDTH; i++) {
-                explored[i * PATHFINDING_WORLD_WIDTH] = 1 << 30;
-                explored[i * PATHFINDING_WORLD_WIDTH + PATHFINDING_WORLD_WIDTH - 1] = 1 << 30;
-                explored[i] = 1 << 30;
-                explored[(PATHFINDING_WORLD_WIDTH - 1) * PATHFINDING_WORLD_WIDTH + i] = 1 << 30;
+    static void clearQueue() {
+        while (popped != entries) {
+            while (bucketHeads[bucket] < 0) bucket++;
+            bucketHeads[bucket] = entryNext[bucketHeads[bucket]];
+            popped++;
+        }
+        entries = popped = 0;
+        bucket = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Reads all chunk words again. This is needed for the first search and if too many changes have been missed.
+     * Returns false if it ran out of time, in which case the next call continues where this one stopped.
+     */
+    boolean readChunkWords() throws GameActionException {
+        // Changes logged after this point are applied later
+        if (chunksRead == 0) changesSeen = rc.readBroadcast(PATHFINDING_CHANGE_COUNT);
+
+        int round = rc.getRoundNum();
+        for (; chunksRead < CHUNK_COUNT; chunksRead++) {
+            if (Clock.getBytecodesLeft() < 3000) return false;
+
+            int chunk = rc.readBroadcast(PATHFINDING + chunksRead);
+            int reserved = rc.readBroadcast(PATHFINDING_TREE + chunksRead);
+            int danger = rc.readBroadcast(PATHFINDING_DANGER + chunksRead);
+            if (danger != 0) danger = dangerLevel(danger, round);
+            if (chunk != chunkWords[chunksRead] || reserved != reservedWords[chunksRead] || danger != dangerLevels[chunksRead]) {
+                chunkWords[chunksRead] = chunk;
+                reservedWords[chunksRead] = reserved;
+                setDangerLevel(chunksRead, danger);
+                clearWeights(chunksRead);
             }
+        }
+        return true;
+    }
 
-            neighbourOffsets = new int[4];
-            for (int i = 0; i < 4; i++) {
-                neighbourOffsets[i] = dy[i] * PATHFINDING_WORLD_WIDTH + dx[i];
+    /** Marks the weights of all nodes in the chunk as not calculated */
+    static void clearWeights(int chunkIndex) {
+        int o = (chunkIndex / CHUNKS_PER_ROW) * PATHFINDING_CHUNK_SIZE * PATHFINDING_WORLD_WIDTH + (chunkIndex % CHUNKS_PER_ROW) * PATHFINDING_CHUNK_SIZE;
+        for (int dy = 0; dy < PATHFINDING_CHUNK_SIZE; dy++, o += PATHFINDING_WORLD_WIDTH) {
+            // Loop unrolled 4x
+            weights[o] = weights[o + 1] = weights[o + 2] = weights[o + 3] = 0;
+        }
+    }
+
+    /** Cost of moving into the node according to the chunk words the search is based on */
+    static int nodeWeight(int node) {
+        int nx = node % PATHFINDING_WORLD_WIDTH;
+        int ny = node / PATHFINDING_WORLD_WIDTH;
+        int chunkIndex = (ny / PATHFINDING_CHUNK_SIZE) * CHUNKS_PER_ROW + nx / PATHFINDING_CHUNK_SIZE;
+        return nodeWeight(chunkWords[chunkIndex], reservedWords[chunkIndex], dangerLevels[chunkIndex], 1 << ((ny % PATHFINDING_CHUNK_SIZE) * PATHFINDING_CHUNK_SIZE + (nx % PATHFINDING_CHUNK_SIZE)));
+    }
+
+    /** Cost of moving into the node with the given bit in a chunk word and reserved word, in a chunk with the given danger level */
+    static int nodeWeight(int chunk, int reserved, int danger, int bit) {
+        if ((chunk & bit) != 0) return COST_BLOCKED;
+        if ((reserved & bit) != 0) return COST_RESERVED + danger * COST_DANGER;
+        return (chunk < 0 ? COST_FREE : COST_UNKNOWN) + danger * COST_DANGER;
+    }
+
+    /** Sets the danger level the search uses for the chunk and keeps track of the chunks with danger */
+    static void setDangerLevel(int chunkIndex, int danger) {
+        int previous = dangerLevels[chunkIndex];
+        dangerLevels[chunkIndex] = danger;
+        if (previous == 0 && danger > 0) {
+            dangerChunks[dangerCount++] = chunkIndex;
+        } else if (previous > 0 && danger == 0) {
+            for (int i = 0; i < dangerCount; i++) {
+                if (dangerChunks[i] == chunkIndex) {
+                    dangerChunks[i] = dangerChunks[--dangerCount];
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Logs a change for every chunk whose danger has decayed below the level the search is based on.
+     * Units only log increases, so the decay would not be noticed otherwise.
+     */
+    static void checkDangerDecay() throws GameActionException {
+        int round = rc.getRoundNum();
+        for (int i = 0; i < dangerCount; i++) {
+            int chunkIndex = dangerChunks[i];
+            if (dangerLevel(rc.readBroadcast(PATHFINDING_DANGER + chunkIndex), round) < dangerLevels[chunkIndex]) {
+                logChunkChange(chunkIndex);
             }
         }
+    }
 
-        MapLocation relativePos = seed.translate(-explorationOrigin.x, -explorationOrigin.y);
-        int seedx = (int)Math.floor(relativePos.x / PATHFINDING_NODE_SIZE);
-        int seedy = (int)Math.floor(relativePos.y / PATHFINDING_NODE_SIZE);
-        int index = seedy * PATHFINDING_WORLD_WIDTH + seedx;
-        explored[index] = pathfindingIndex;
-        costs[index] = 0;
-        queue.addLast(seedx + seedy * PATHFINDING_WORLD_WIDTH);
+    static void updateNodeBounds() {
+        minNodeX = (int)Math.ceil((mapEdges2 - explorationOrigin.x) / PATHFINDING_NODE_SIZE);
+        maxNodeX = (int)Math.floor((mapEdges0 - explorationOrigin.x) / PATHFINDING_NODE_SIZE);
+        minNodeY = (int)Math.ceil((mapEdges3 - explorationOrigin.y) / PATHFINDING_NODE_SIZE);
+        maxNodeY = (int)Math.floor((mapEdges1 - explorationOrigin.y) / PATHFINDING_NODE_SIZE);
     }
 
-    static int searchTime = 0;
-    static int searchTime2 = 0;
-    static int searchTime3 = 0;
-    static int searchTime4 = 0;
+    /**
+     * Starts a new search from the current seeds.
+     */
+    void startFullSearch() throws GameActionException {
+        if (++pathfindingIndex == BORDER_GENERATION) {
+            // Only happens after hundreds of searches, forget all of them
+            int border = BORDER_GENERATION << GENERATION_SHIFT;
+            for (int i = 0; i < nodeStates.length; i++) {
+                if (nodeStates[i] != border) nodeStates[i] &= 3;
+            }
+            pathfindingIndex = 1;
+        }
+        clearQueue();
+        invalidated.head = invalidated.tail;
+        changedNodes.head = changedNodes.tail;
+        restartSearch = false;
+        while (changedChunks.head != changedChunks.tail) {
+            chunkChanged[changedChunks.pollFirst()] = false;
+        }
+        fullSearch = true;
+        broadcastRow = 0;
+        diagonalRow = CHUNKS_PER_ROW;
+
+        for (int i = 0; i < seedCount; i++) {
+            int index = seedNodes[i];
+            nodeStates[index] = pathfindingIndex << GENERATION_SHIFT | 1 << COST_SHIFT;
+            push(index, 0);
+        }
+    }
 
-    void addPathfindingSeeds() throws GameActionException {
-        boolean addedAny = false;
+    /**
+     * Determines which nodes the search should start from.
+     * Returns true if they are different from the ones the current search was started from.
+     */
+    boolean updatePathfindingSeeds() throws GameActionException {
+        int previousCount = seedCount;
+        boolean changed = false;
+        seedCount = 0;
         for (int i = 0; i < NUMBER_OF_TARGETS; ++i) {
             int offset = TARGET_OFFSET + 10 * i;
             int timeSpotted = rc.readBroadcast(offset);
             float priority = rc.readBroadcastFloat(offset + 1) / (rc.getRoundNum() - timeSpotted + 5.0f);
-            System.out.println("Target number " + i);
-            System.out.println("Time spotted: " + timeSpotted);
-            System.out.println("Priority: " + priority);
-            MapLocation loc = readBroadcastPosition(offset + 2);
-            System.out.println("Location: " + loc);
             if (priority > 0.5 && timeSpotted > rc.getRoundNum() - 300) {
-                addPathfindingseed(loc);
-                addedAny = true;
+                int node = snapToNode(readBroadcastPosition(offset + 2));
+                changed |= seedCount >= previousCount || seedNodes[seedCount] != node;
+                seedNodes[seedCount++] = node;
             }
         }
-        if (!addedAny) {
+        if (seedCount == 0) {
             for (MapLocation archon : initialArchonLocations) {
-                addPathfindingseed(archon);
+                int node = snapToNode(archon);
+                changed |= seedCount >= previousCount || seedNodes[seedCount] != node;
+                seedNodes[seedCount++] = node;
             }
         }
-        /*MapLocation[] archons = rc.getInitialArchonLocations(rc.getTeam().opponent());
-        int lastAttackingEnemySpotted = rc.readBroadcast(HIGH_PRIORITY_TARGET_OFFSET);
-        MapLocation highPriorityTargetPos = readBroadcastPosition(HIGH_PRIORITY_TARGET_OFFSET + 1);
-        if (rc.getRoundNum() < lastAttackingEnemySpotted + 50) {
-            addPathfindingseed(highPriorityTargetPos);
-        }
-        else {
-            for (MapLocation archon : archons) {
-                addPathfindingseed(archon);
-            }
-        }*/
+        return changed || seedCount != previousCount;
     }
 
     /** A highly optimised pathfinding routine.
-     * Implements a BFS.
+     * Implements Dijkstra's algorithm with a bucket queue, which is kept up to date with the latest chunk information.
+     * Changes to chunks are repaired locally, only changing the seeds requires a new search.
+     * A new search first broadcasts the result of a much cheaper breadth first search (see expandWaves).
+     * The work is split over as many calls as needed.
      */
     void pathfinding() throws GameActionException {
-        if (explored == null) {
-            // Pathfinding not started yet
-            resetPathfinding();
-            addPathfindingSeeds();
+        if (nodeStates == null) {
+            // Allocating the search state takes a while, wait for a round with little else to do
+            if (Clock.getBytecodesLeft() < ALLOCATION_BYTECODES) return;
+            allocatePathfinding();
+            return;
         }
+        FlowFields.recordSpareBytecodes(Clock.getBytecodesLeft());
 
-        int w0 = Clock.getBytecodeNum();
+        if (chunksRead < CHUNK_COUNT) {
+            if (!readChunkWords()) return;
+            restartSearch = true;
+        }
 
-        float centerOffsetX = explorationOrigin.x - (mapEdges0 + mapEdges2) * 0.5f;
-        float centerOffsetY = explorationOrigin.y - (mapEdges1 + mapEdges3) * 0.5f;
-        double mapRadius = Math.min(mapEdges0 - mapEdges2, mapEdges1 - mapEdges3) * 0.5f;
-        mapRadius /= PATHFINDING_NODE_SIZE;
-        centerOffsetX /= PATHFINDING_NODE_SIZE;
-        centerOffsetY /= PATHFINDING_NODE_SIZE;
+        boolean idle = popped == entries && invalidated.head == invalidated.tail && !fullSearch;
+        if (idle || restartSearch) {
+            if (Clock.getBytecodesLeft() < 8000) return;
 
-        int timeLimit = 5000;
+            boolean newSearch = updatePathfindingSeeds() || restartSearch;
+            checkDangerDecay();
+            if (!applyChanges(!newSearch)) {
+                // Too many changes have been missed
+                chunksRead = 0;
+                restartSearch = true;
+                return;
+            }
+            if (newSearch) {
+                startFullSearch();
+                // Any other field that was being refreshed is picked again later
+                if (!startWaveSearch()) waveField = -1;
+            }
+        }
+
+        // Broadcast a rough result first, the exact search takes many turns
+        if (waveField == FlowFields.ENEMY_ARCHONS && !runWaveSearch()) return;
+
+        Profiler.begin(PROFILE_PATHFINDING);
+        boolean done = expand();
+        Profiler.end();
+        if (!done) return;
+
+        // Write pathfinding result
+        Profiler.begin(PROFILE_BROADCAST_PATHFINDING_RESULT);
+        if (fullSearch) {
+            if (broadcastPathfindingResult()) {
+                fullSearch = false;
+                rc.broadcast(PATHFINDING_FIELD_ROUNDS + FlowFields.ENEMY_ARCHONS, rc.getRoundNum());
+            }
+        } else {
+            broadcastChangedResults();
+        }
+        boolean refined = !fullSearch && broadcastPathfindingDiagonals();
+        Profiler.end();
+
+        if (refined) refreshOtherFields();
+    }
+
+    /**
+     * Refreshes the other flow fields picked by the registry with the wave search, using whatever time is left.
+     */
+    void refreshOtherFields() throws GameActionException {
         while (true) {
+            if (waveField == -1) {
+                if (Clock.getBytecodesLeft() < 8000) return;
+
+                int field = FlowFields.pickField();
+                if (field == -1 || !startWaveSearch(field, FlowFields.seeds, FlowFields.seedCount)) return;
+            }
+
+            if (!runWaveSearch()) return;
+        }
+    }
+
+    /**
+     * Continues the wave search and broadcasts its result to the field it was started for.
+     * Returns false if it ran out of time, in which case the next call continues where this one stopped.
+     */
+    boolean runWaveSearch() throws GameActionException {
+        int left = Clock.getBytecodesLeft();
+        Profiler.begin(PROFILE_WAVE_SEARCH);
+        boolean done = expandWaves() && (!waveSeeded || broadcastWaveResult());
+        Profiler.end();
+        waveCost += left - Clock.getBytecodesLeft();
+        if (!done) return false;
+
+        if (waveField == FlowFields.ENEMY_ARCHONS) {
+            rc.broadcast(PATHFINDING_FIELD_ROUNDS + FlowFields.ENEMY_ARCHONS, rc.getRoundNum());
+        } else if (waveSeeded) {
+            FlowFields.refreshed(waveField, waveCost);
+        } else {
+            // Nothing to search from, try again later
+            FlowFields.lastRefresh[waveField] = rc.getRoundNum();
+        }
+        waveField = -1;
+        return true;
+    }
+
+    /**
+     * Expands nodes in order of cost until the queue is empty.
+     * Returns false if it ran out of time before that.
+     */
+    boolean expand() throws GameActionException {
+        updateNodeBounds();
+
+        // A search from scratch broadcasts everything anyway
+        boolean logChanges = !fullSearch;
+
+        int timeLimit = 5000;
+        int generation = pathfindingIndex << GENERATION_SHIFT;
+        int nextGeneration = generation + (1 << GENERATION_SHIFT);
+
+        // Finish removing nodes from the search before expanding anything
+        while (invalidated.head != invalidated.tail) {
             if (Clock.getBytecodesLeft() < timeLimit) {
-                searchTime += Clock.getBytecodeNum() - w0;
-                return;
+                return false;
             }
 
-            int w2 = Clock.getBytecodeNum();
+            invalidateChildren(invalidated.pollFirst());
+            if (++invalidatedNodes > MAX_INVALIDATED_NODES) {
+                restartSearch = true;
+                return false;
+            }
+        }
 
-            int node;
-            // Inlined check for queue.isEmpty
-            if (queue.head != queue.tail) {
-                node = queue.pollFirst();
-            } else if (secondaryQueue.head != secondaryQueue.tail) {
-                node = secondaryQueue.pollFirst();
-            } else if (tertiaryQueue.head != tertiaryQueue.tail) {
-                node = tertiaryQueue.pollFirst();
-            } else {
+        while (true) {
+            if (Clock.getBytecodesLeft() < timeLimit) {
+                return false;
+            }
+
+            if (popped == entries) {
+                // Reuse the entries from the start
+                entries = popped = 0;
+                bucket = Integer.MAX_VALUE;
                 break;
             }
 
-            searchTime4 += Clock.getBytecodeNum() - w2;
+            // Inlined pop
+            int head;
+            while ((head = bucketHeads[bucket]) < 0) bucket++;
+            bucketHeads[bucket] = entryNext[head];
+            popped++;
+            int node = entryNodes[head];
+            int nodeCost = bucket;
+            int nodeState = generation + ((nodeCost + 1) << COST_SHIFT);
+
+            // Skip nodes that have been reached with a lower cost, or removed by a repair, after they were added
+            if ((nodeStates[node] & ~3) != nodeState) continue;
 
             //rc.setIndicatorDot(origin.translate((x + 0.5f) * PATHFINDING_NODE_SIZE, (y + 0.5f) * PATHFINDING_NODE_SIZE), 255, 255, 255);
 
             for (int i = 0; i < 4; i++) {
                 int nindex = node + neighbourOffsets[i];
+                int nstate = nodeStates[nindex];
+
+                // The border is marked as reached by a later search so that it is never reached
+                if (nstate >= nextGeneration) continue;
 
-                if (explored[nindex] < pathfindingIndex) {
-                    int w1 = Clock.getBytecodeNum();
+                int weight = weights[nindex];
+                if (weight == 0) {
+                    // Inlined nodeWeight call
                     int nx = nindex % PATHFINDING_WORLD_WIDTH;
                     int ny = nindex / PATHFINDING_WORLD_WIDTH;
-                    int chunk = pathfindingChunkDataForNode(nx, ny);
-
-                    // Traversable if this is == 0, blocked if it is == 1
-                    int blocked = (chunk >> ((ny % PATHFINDING_CHUNK_SIZE) * PATHFINDING_CHUNK_SIZE + (nx % PATHFINDING_CHUNK_SIZE))) & 1;
-                    // Note that fullyExplored is stored in bit 31, not 30 so this
-                    // will be 2 if it is explored and 0 if it is not explored
-                    int fullyExplored = chunk >>> 30;
-                    explored[nindex] = pathfindingIndex;
-                    parents[nindex] = i;
-                    searchTime2 += Clock.getBytecodeNum() - w1;
-
-                    switch (blocked | fullyExplored) {
-                        // blocked
-                        case 1:
-                        case 3:
-                            // We definitely know it is not traversable
-                            tertiaryQueue.addLast(nindex);
-                            costs[nindex] = costs[node] + 100;
-                            break;
-
-                        // fullyExplored == 1
-                        case 2:
-                            // We definitely know it is traversable
-                            queue.addLast(nindex);
-                            costs[nindex] = costs[node] + 1;
-                            break;
-
-                        // traversable, but not fully explored. It might actually be blocked
-                        default:
-                            w1 = Clock.getBytecodeNum();
-
-                            // It may be traversable or it may not, we don't really know
-
-                            // Short circuit the check below for a large part of the map
-                            if (Math.hypot(nx + centerOffsetX, ny + centerOffsetY) < mapRadius) {
-                                queue.addLast(nindex);
-                                costs[nindex] = costs[node] + 1;
-                            } else {
-                                float wx = explorationOrigin.x + nx * PATHFINDING_NODE_SIZE;
-                                float wy = explorationOrigin.y + ny * PATHFINDING_NODE_SIZE;
-                                // Inlined onMap call
-                                if (wx <= mapEdges0 && wy <= mapEdges1 && wx >= mapEdges2 && wy >= mapEdges3) {
-                                    queue.addLast(nindex);
-                                    costs[nindex] = costs[node] + 1;
-                                }
-                            }
-
-                            searchTime3 += Clock.getBytecodeNum() - w1;
-                            break;
-                    }
+                    int chunkIndex = (ny / PATHFINDING_CHUNK_SIZE) * CHUNKS_PER_ROW + nx / PATHFINDING_CHUNK_SIZE;
+                    int chunk = chunkWords[chunkIndex];
+                    int bit = 1 << ((ny % PATHFINDING_CHUNK_SIZE) * PATHFINDING_CHUNK_SIZE + (nx % PATHFINDING_CHUNK_SIZE));
+                    if ((chunk & bit) != 0) weight = COST_BLOCKED;
+                    else if ((reservedWords[chunkIndex] & bit) != 0) weight = COST_RESERVED + dangerLevels[chunkIndex] * COST_DANGER;
+                    else weight = (chunk < 0 ? COST_FREE : COST_UNKNOWN) + dangerLevels[chunkIndex] * COST_DANGER;
+                    weights[nindex] = weight;
+                }
+
+                // Already reached with at most the same cost, the shift drops the direction bits
+                if (nstate >= generation && (nstate - nodeState) >> COST_SHIFT <= weight) continue;
 
-                    //rc.debug_setIndicatorDot(origin.translate(nx * PATHFINDING_NODE_SIZE, ny * PATHFINDING_NODE_SIZE), 0, 0, 200);
+                // Only nodes in chunks that have not been fully explored have odd weights
+                if ((weight & 1) != 0) {
+                    // It may be traversable or it may not, we don't really know.
+                    // But it is definitely not traversable if it is outside the map.
+                    int nx = nindex % PATHFINDING_WORLD_WIDTH;
+                    int ny = nindex / PATHFINDING_WORLD_WIDTH;
+                    if (nx < minNodeX || nx > maxNodeX || ny < minNodeY || ny > maxNodeY) {
+                        // Never try to reach it again. The direction is kept, units at the edge of the map may still follow it.
+                        nodeStates[nindex] = generation | (nstate & 3);
+                        continue;
+                    }
                 }
+
+                int cost = nodeCost + weight;
+                nodeStates[nindex] = nodeState + (weight << COST_SHIFT) + i;
+
+                // Inlined push, the cost is never lower than the current bucket
+                if (entries == entryNodes.length) growEntries();
+                if (cost >= bucketHeads.length) growBuckets(cost);
+                entryNodes[entries] = nindex;
+                entryNext[entries] = bucketHeads[cost];
+                bucketHeads[cost] = entries++;
+
+                if (logChanges) changedNodes.addLast(nindex);
+
+                //rc.debug_setIndicatorDot(origin.translate(nx * PATHFINDING_NODE_SIZE, ny * PATHFINDING_NODE_SIZE), 0, 0, 200);
             }
         }
 
-        searchTime += Clock.getBytecodeNum() - w0;
-        //System.out.println("SEARCH TIME: " + searchTime + "\t" + searchTime2 + "\t" + searchTime3 + "\t" + searchTime4);
-        searchTime = 0;
-        searchTime2 = 0;
-        searchTime3 = 0;
-        searchTime4 = 0;
         //yieldAndDoBackgroundTasks();
         //debug_graph();
         //yieldAndDoBackgroundTasks();
         //debug_search();
+        return true;
+    }
 
-        // Write pathfinding result
-        broadcastPathfindingResult();
+    /**
+     * Applies the chunk changes that have been logged since the last pass to the chunk words and the weights.
+     * If repair is true the search is repaired as well: nodes that became cheaper are relaxed, nodes that
+     * became more expensive are removed together with every node whose path went through them
+     * (see invalidateChildren).
+     * Returns false if too many changes have been missed and all chunk words have to be read again.
+     */
+    boolean applyChanges(boolean repair) throws GameActionException {
+        int count = rc.readBroadcast(PATHFINDING_CHANGE_COUNT);
+        if (count - changesSeen > PATHFINDING_CHANGE_LOG_SIZE) return false;
+
+        updateNodeBounds();
+        invalidatedNodes = 0;
+        int round = rc.getRoundNum();
+        for (; changesSeen < count; changesSeen++) {
+            // The remaining changes are applied in the next pass
+            if (Clock.getBytecodesLeft() < 7000) break;
+
+            int chunkIndex = rc.readBroadcast(PATHFINDING_CHANGE_LOG + changesSeen % PATHFINDING_CHANGE_LOG_SIZE);
+            int previous = chunkWords[chunkIndex];
+            int previousReserved = reservedWords[chunkIndex];
+            int previousDanger = dangerLevels[chunkIndex];
+            int chunk = rc.readBroadcast(PATHFINDING + chunkIndex);
+            int reserved = rc.readBroadcast(PATHFINDING_TREE + chunkIndex);
+            int danger = dangerLevel(rc.readBroadcast(PATHFINDING_DANGER + chunkIndex), round);
+            chunkWords[chunkIndex] = chunk;
+            reservedWords[chunkIndex] = reserved;
+            setDangerLevel(chunkIndex, danger);
+
+            // Whether the chunk is fully explored and its danger affect the cost of all nodes in it.
+            // The same chunk may be in the log several times, in which case only the first entry changes anything.
+            int changed = (previous ^ chunk) < 0 || danger != previousDanger ? 0xFFFF : ((previous ^ chunk) | (previousReserved ^ reserved)) & 0xFFFF;
+            if (changed == 0) continue;
+
+            int x0 = (chunkIndex % CHUNKS_PER_ROW) * PATHFINDING_CHUNK_SIZE;
+            int y0 = (chunkIndex / CHUNKS_PER_ROW) * PATHFINDING_CHUNK_SIZE;
+            for (int i = 0; i < PATHFINDING_CHUNK_SIZE * PATHFINDING_CHUNK_SIZE; i++) {
+                int bit = 1 << i;
+                if ((changed & bit) == 0) continue;
+
+                int nx = x0 + i % PATHFINDING_CHUNK_SIZE;
+                int ny = y0 + i / PATHFINDING_CHUNK_SIZE;
+                int index = ny * PATHFINDING_WORLD_WIDTH + nx;
+                int oldWeight = nodeWeight(previous, previousReserved, previousDanger, bit);
+                int newWeight = nodeWeight(chunk, reserved, danger, bit);
+                weights[index] = newWeight;
+                if (!repair || newWeight == oldWeight) continue;
+
+                // Neighbours may only be able to move diagonally past the node now (see pathfindingResultWord)
+                changedNodes.addLast(index);
+
+                // Only nodes that have been reached can be affected, seeds never change
+                int state = nodeStates[index];
+                if (state >>> GENERATION_SHIFT != pathfindingIndex || (state & COST_MASK) <= 1 << COST_SHIFT) continue;
+
+                if ((newWeight & 1) != 0 && (nx < minNodeX || nx > maxNodeX || ny < minNodeY || ny > maxNodeY)) {
+                    newWeight = -1;
+                }
 
-        {
-            resetPathfinding();
-            addPathfindingSeeds();
+                if (newWeight < 0 || newWeight > oldWeight) {
+                    nodeStates[index] &= 3;
+                    invalidated.addLast(index);
+                } else {
+                    relaxNode(index, newWeight);
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Updates the node if a neighbour gives a cheaper path to it now that moving into it costs weight */
+    void relaxNode(int node, int weight) {
+        // States of the current search are compared directly, they only differ in the cost and direction
+        int reached = pathfindingIndex << GENERATION_SHIFT | 1 << COST_SHIFT;
+        int nextGeneration = (pathfindingIndex + 1) << GENERATION_SHIFT;
+        int best = nodeStates[node] & ~3;
+        int parentDir = -1;
+        for (int i = 0; i < 4; i++) {
+            int parent = nodeStates[node - neighbourOffsets[i]];
+            if (parent >= reached && parent < nextGeneration) {
+                int state = (parent & ~3) + (weight << COST_SHIFT);
+                if (state < best) {
+                    best = state;
+                    parentDir = i;
+                }
+            }
+        }
+
+        if (parentDir >= 0) {
+            nodeStates[node] = best | parentDir;
+            push(node, stateCost(best));
+            changedNodes.addLast(node);
         }
     }
 
-    void broadcastPathfindingResult() throws GameActionException {
+    /** Cost of the path to a node from its search state, -1 if it can never be reached */
+    static int stateCost(int state) {
+        return ((state & COST_MASK) >> COST_SHIFT) - 1;
+    }
+
+    /**
+     * Removes the children of a node that has been removed from the search, and queues the remaining
+     * neighbours so that the removed nodes will be reached again.
+     * The children are added to the invalidated queue so that eventually every node whose path went
+     * through the first removed node is removed.
+     */
+    void invalidateChildren(int node) {
+        int reached = pathfindingIndex << GENERATION_SHIFT | 1 << COST_SHIFT;
+        int nextGeneration = (pathfindingIndex + 1) << GENERATION_SHIFT;
+        for (int i = 0; i < 4; i++) {
+            int nindex = node + neighbourOffsets[i];
+            int state = nodeStates[nindex];
+            if (state < reached || state >= nextGeneration) continue;
+
+            // Seeds have the lowest state and are never removed
+            if ((state & 3) == i && state >= reached + (1 << COST_SHIFT)) {
+                nodeStates[nindex] &= 3;
+                invalidated.addLast(nindex);
+            } else {
+                // May be removed later, in which case it is skipped when it is expanded
+                push(nindex, stateCost(state));
+            }
+        }
+    }
+
+    // Breadth first search which expands a whole row of the frontier at once. It is used to broadcast
+    // a rough result quickly whenever a new search is started, while the exact search catches up.
+    // Row y of the grid is stored in a long where bit i is column waveBase + i, so it can only be used
+    // once the map is known to be at most 64 nodes wide.
+    private static long[] waveFrontier = null;
+    private static long[] waveNext = null;
+    /** Nodes which may still be reached */
+    private static long[] waveOpen = null;
+    /** Blocked nodes on the map, they are opened when nothing else can be reached */
+    private static long[] waveBlocked = null;
+    /** Low and high bits of the direction each node was reached from */
+    private static long[] waveLow = null;
+    private static long[] waveHigh = null;
+    /** Columns of the window that are on the map */
+    private static long waveOnMap;
+    private static int waveBase, waveMinRow, waveMaxRow, waveRowsBuilt, waveFrontierMin, waveFrontierMax;
+    /** Flow field the wave search is computing (see FlowFields), or -1 if it is not running */
+    private static int waveField = -1;
+    private static int[] waveSeeds;
+    private static int waveSeedCount;
+    /** True if the search starts from every node in a chunk that has not been fully explored */
+    private static boolean waveSeedUnexplored;
+    /** True if the search found anything to start from */
+    private static boolean waveSeeded;
+    private static boolean waveThroughBlocked = false;
+    private static int waveBroadcastRow = 0;
+    /** Bytecodes used so far by the current wave search */
+    private static int waveCost;
+    /** Last broadcast value of each result word of each flow field, allocated when first needed */
+    private static int[][] fieldWords = null;
+    /** Bits 0-3 moved to bits 0, 2, 4 and 6 */
+    private static final int[] spreadBits = {0, 1, 4, 5, 16, 17, 20, 21, 64, 65, 68, 69, 80, 81, 84, 85};
+
+    /** Starts a breadth first search for the field to the enemy archons from the current seeds */
+    boolean startWaveSearch() throws GameActionException {
+        return startWaveSearch(FlowFields.ENEMY_ARCHONS, seedNodes, seedCount);
+    }
+
+    /**
+     * Starts a breadth first search for the given flow field from the given seeds.
+     * Returns false if the map is not known to be narrow enough for it, or if no seed is on the map.
+     */
+    boolean startWaveSearch(int field, int[] seeds, int count) throws GameActionException {
+        updateNodeBounds();
+        waveBase = Math.max(minNodeX, 0) & ~(PATHFINDING_CHUNK_SIZE - 1);
+        waveMinRow = Math.max(minNodeY, 1);
+        waveMaxRow = Math.min(maxNodeY, PATHFINDING_WORLD_WIDTH - 2);
+        int minX = Math.max(minNodeX, 1);
+        int maxX = Math.min(maxNodeX, PATHFINDING_WORLD_WIDTH - 2);
+        if (maxX - waveBase >= 64 || minX > maxX || waveMinRow > waveMaxRow) return false;
+        waveOnMap = (-1L >>> (63 - maxX + minX)) << (minX - waveBase);
+
+        // The frontier is only known once the rows have been built
+        boolean hasSeed = field == FlowFields.FRONTIER;
+        for (int i = 0; i < count; i++) {
+            int x = seeds[i] % PATHFINDING_WORLD_WIDTH;
+            int y = seeds[i] / PATHFINDING_WORLD_WIDTH;
+            hasSeed |= x >= minX && x <= maxX && y >= waveMinRow && y <= waveMaxRow;
+        }
+        if (!hasSeed) return false;
+
+        if (waveFrontier == null) {
+            waveFrontier = new long[PATHFINDING_WORLD_WIDTH];
+            waveNext = new long[PATHFINDING_WORLD_WIDTH];
+            waveOpen = new long[PATHFINDING_WORLD_WIDTH];
+            waveBlocked = new long[PATHFINDING_WORLD_WIDTH];
+            waveLow = new long[PATHFINDING_WORLD_WIDTH];
+            waveHigh = new long[PATHFINDING_WORLD_WIDTH];
+        }
+
+        if (fieldWords[field] == null) {
+            // Another archon may have maintained the field before this one
+            fieldWords[field] = new int[CHUNK_COUNT];
+            for (int i = 0; i < CHUNK_COUNT; i++) {
+                fieldWords[field][i] = rc.readBroadcast(FlowFields.channels[field] + i);
+            }
+        }
+
+        waveField = field;
+        waveSeeds = seeds;
+        waveSeedCount = count;
+        waveSeedUnexplored = field == FlowFields.FRONTIER;
+        waveSeeded = false;
+        waveCost = 0;
+        waveRowsBuilt = waveMinRow;
+        waveThroughBlocked = false;
+        waveBroadcastRow = 0;
+        waveFrontierMin = PATHFINDING_WORLD_WIDTH;
+        waveFrontierMax = -1;
+        return true;
+    }
+
+    /**
+     * Builds the rows of the wave search from the chunk words.
+     * Returns false if it ran out of time, in which case the next call continues where this one stopped.
+     */
+    boolean buildWaveRows() {
+        int firstChunk = waveBase / PATHFINDING_CHUNK_SIZE;
+        int lastChunk = Math.min(waveBase / PATHFINDING_CHUNK_SIZE + 16, CHUNKS_PER_ROW) - 1;
+
+        for (; waveRowsBuilt <= waveMaxRow; waveRowsBuilt++) {
+            if (Clock.getBytecodesLeft() < 3000) return false;
+
+            int y = waveRowsBuilt;
+            int shift = (y % PATHFINDING_CHUNK_SIZE) * PATHFINDING_CHUNK_SIZE;
+            int chunkRow = (y / PATHFINDING_CHUNK_SIZE) * CHUNKS_PER_ROW;
+            long blocked = 0;
+            for (int cx = firstChunk; cx <= lastChunk; cx++) {
+                blocked |= (long)((chunkWords[chunkRow + cx] >>> shift) & 0xF) << (cx * PATHFINDING_CHUNK_SIZE - waveBase);
+            }
+
+            long unexplored = 0;
+            if (waveSeedUnexplored) {
+                for (int cx = firstChunk; cx <= lastChunk; cx++) {
+                    if (chunkWords[chunkRow + cx] >= 0) unexplored |= 0xFL << (cx * PATHFINDING_CHUNK_SIZE - waveBase);
+                }
+                unexplored &= waveOnMap & ~blocked;
+            }
+
+            waveOpen[y] = waveOnMap & ~blocked & ~unexplored;
+            waveBlocked[y] = waveOnMap & blocked;
+            waveFrontier[y] = unexplored;
+            if (unexplored != 0) {
+                waveSeeded = true;
+                waveFrontierMin = Math.min(waveFrontierMin, y);
+                waveFrontierMax = Math.max(waveFrontierMax, y);
+            }
+            waveNext[y] = 0;
+            waveLow[y] = 0;
+            waveHigh[y] = 0;
+        }
+
+        // Clear the rows around the map, they are read but never expanded
+        waveFrontier[waveMinRow - 1] = waveFrontier[waveMaxRow + 1] = 0;
+        waveNext[waveMinRow - 1] = waveNext[waveMaxRow + 1] = 0;
+        waveLow[waveMinRow - 1] = waveLow[waveMaxRow + 1] = 0;
+        waveHigh[waveMinRow - 1] = waveHigh[waveMaxRow + 1] = 0;
+
+        for (int i = 0; i < waveSeedCount; i++) {
+            int y = waveSeeds[i] / PATHFINDING_WORLD_WIDTH;
+            int x = waveSeeds[i] % PATHFINDING_WORLD_WIDTH - waveBase;
+            if (y < waveMinRow || y > waveMaxRow || x < 0 || ((waveOnMap >>> x) & 1) == 0) continue;
+
+            waveSeeded = true;
+            waveFrontier[y] |= 1L << x;
+            waveOpen[y] &= ~(1L << x);
+            waveBlocked[y] &= ~(1L << x);
+            waveFrontierMin = Math.min(waveFrontierMin, y);
+            waveFrontierMax = Math.max(waveFrontierMax, y);
+        }
+        return true;
+    }
+
+    /**
+     * Expands the wave search one row of the frontier at a time until nothing more can be reached.
+     * Nodes that are not blocked are reached first, then the search continues through the blocked nodes.
+     * Returns false if it ran out of time, in which case the next call continues where this one stopped.
+     */
+    boolean expandWaves() {
+        if (waveRowsBuilt <= waveMaxRow && !buildWaveRows()) return false;
+
+        long[] frontier = waveFrontier;
+        long[] next = waveNext;
+        long[] open = waveOpen;
+        long[] low = waveLow;
+        long[] high = waveHigh;
+        while (true) {
+            if (Clock.getBytecodesLeft() < 5000) {
+                waveFrontier = frontier;
+                waveNext = next;
+                return false;
+            }
+
+            if (waveFrontierMin > waveFrontierMax) {
+                if (waveThroughBlocked) break;
+
+                // Nothing else can be reached without passing through blocked nodes,
+                // so continue from all the nodes reached so far
+                waveThroughBlocked = true;
+                for (int y = waveMinRow; y <= waveMaxRow; y++) {
+                    frontier[y] = waveOnMap & ~open[y] & ~waveBlocked[y];
+                    open[y] |= waveBlocked[y];
+                }
+                waveFrontierMin = waveMinRow;
+                waveFrontierMax = waveMaxRow;
+                continue;
+            }
+
+            int from = Math.max(waveFrontierMin - 1, waveMinRow);
+            int to = Math.min(waveFrontierMax + 1, waveMaxRow);
+            int nextMin = PATHFINDING_WORLD_WIDTH;
+            int nextMax = -1;
+            long above = frontier[from - 1];
+            long current = frontier[from];
+            for (int y = from; y <= to; y++) {
+                long below = frontier[y + 1];
+                long candidates = open[y];
+
+                // Direction 0 is from the node to the left, 2 from the right, 1 from the row above and 3 from the row below
+                long fromLeft = (current << 1) & candidates;
+                long fromRight = (current >>> 1) & candidates & ~fromLeft;
+                long vertical = (above | below) & candidates & ~fromLeft & ~fromRight;
+                long reached = fromLeft | fromRight | vertical;
+
+                if (reached != 0) {
+                    next[y] = reached;
+                    open[y] = candidates & ~reached;
+                    low[y] |= vertical;
+                    high[y] |= fromRight | (vertical & ~above);
+                    if (y < nextMin) nextMin = y;
+                    nextMax = y;
+                }
+
+                above = current;
+                current = below;
+            }
+
+            // Clear the old frontier so that it can hold the next one
+            for (int y = waveFrontierMin; y <= waveFrontierMax; y++) {
+                frontier[y] = 0;
+            }
+
+            long[] tmp = frontier;
+            frontier = next;
+            next = tmp;
+            waveFrontierMin = nextMin;
+            waveFrontierMax = nextMax;
+        }
+
+        waveFrontier = frontier;
+        waveNext = next;
+        return true;
+    }
+
+    /**
+     * Broadcasts the result of the wave search, skipping words that have not changed since the last time.
+     * Returns false if it ran out of time, in which case the next call continues where this one stopped.
+     */
+    boolean broadcastWaveResult() throws GameActionException {
+        int channel = FlowFields.channels[waveField];
+        int[] words = fieldWords[waveField];
+        int firstChunkRow = waveMinRow / PATHFINDING_CHUNK_SIZE;
+        int lastChunkRow = waveMaxRow / PATHFINDING_CHUNK_SIZE;
+        int firstChunk = waveBase / PATHFINDING_CHUNK_SIZE;
+        int lastChunk = Math.min(waveBase / PATHFINDING_CHUNK_SIZE + 16, CHUNKS_PER_ROW) - 1;
+        if (waveBroadcastRow < firstChunkRow) waveBroadcastRow = firstChunkRow;
+
+        for (; waveBroadcastRow <= lastChunkRow; waveBroadcastRow++) {
+            if (Clock.getBytecodesLeft() < 3000) return false;
+
+            int y0 = waveBroadcastRow * PATHFINDING_CHUNK_SIZE;
+            for (int cx = firstChunk; cx <= lastChunk; cx++) {
+                int shift = cx * PATHFINDING_CHUNK_SIZE - waveBase;
+                int data = 0;
+                for (int dy = 0; dy < PATHFINDING_CHUNK_SIZE; dy++) {
+                    int y = y0 + dy;
+                    if (y < waveMinRow || y > waveMaxRow) continue;
+
+                    data |= (spreadBits[(int)(waveLow[y] >>> shift) & 0xF] | spreadBits[(int)(waveHigh[y] >>> shift) & 0xF] << 1) << (2 * dy * PATHFINDING_CHUNK_SIZE);
+                }
+
+                int chunkIndex = waveBroadcastRow * CHUNKS_PER_ROW + cx;
+                if (data != words[chunkIndex]) {
+                    words[chunkIndex] = data;
+                    rc.broadcast(channel + chunkIndex, data);
+                }
+                // The wave search only moves along the grid
+                if (waveField == FlowFields.ENEMY_ARCHONS) broadcastDiagonals(chunkIndex, 0);
+            }
+        }
+        return true;
+    }
+
+    /** Cost of the path from the node to the closest seed, or -1 if it has not been reached */
+    static int pathfindingCost(int node) {
+        return nodeStates != null && nodeStates[node] >>> GENERATION_SHIFT == pathfindingIndex ? stateCost(nodeStates[node]) : -1;
+    }
+
+    /**
+     * Packs the directions of the nodes in a chunk into a single word, and their diagonal bits into resultDiagonals.
+     * A node points at its parent, unless a diagonal neighbour next to the parent is cheaper and the corner on the
+     * other side is not blocked. Then it has its diagonal bit set and points at whichever of the two nodes next to
+     * the diagonal is clockwise of it (see Robot.nextPointOnPath).
+     * A diagonal step counts as one and a half steps, so every step decreases the cost.
+     */
+    static int pathfindingResultWord(int chunkIndex) {
+        int cx = chunkIndex % CHUNKS_PER_ROW;
+        int cy = chunkIndex / CHUNKS_PER_ROW;
+        int data = 0;
+        int diagonals = 0;
+        int index = pathfindingIndex;
+        // Costs of nodes reached by the current search can be compared directly on their states
+        int reached = index << GENERATION_SHIFT | 1 << COST_SHIFT;
+        int nextGeneration = (index + 1) << GENERATION_SHIFT;
+        int aboveZero = reached + (1 << COST_SHIFT);
+        int[] states = nodeStates;
+        int[] nodeWeights = weights;
+        int[] offsets = neighbourOffsets;
+        // Iterate over all nodes in the chunk
+        int bit = 0;
+        int rowStart = cy * PATHFINDING_CHUNK_SIZE * PATHFINDING_WORLD_WIDTH + cx * PATHFINDING_CHUNK_SIZE;
+        for (int dy = 0; dy < PATHFINDING_CHUNK_SIZE; dy++, rowStart += PATHFINDING_WORLD_WIDTH) {
+            for (int o = rowStart; o < rowStart + PATHFINDING_CHUNK_SIZE; o++, bit++) {
+                int state = states[o];
+                int dir = state & 3;
+                // Reached with a cost above 0
+                if (state >= aboveZero && state < nextGeneration) {
+                    int parent = o - offsets[dir];
+                    if (nodeWeights[parent] < COST_BLOCKED) {
+                        // States with a cost one lower than the parent, neighbours cheaper than that give a diagonal
+                        int best = (states[parent] & ~3) - (1 << COST_SHIFT);
+                        int side = offsets[(dir + 3) & 3];
+                        int other = states[parent + side];
+                        if (other < best && other >= reached && nodeWeights[o + side] < COST_BLOCKED) {
+                            best = other & ~3;
+                            diagonals |= 1 << bit;
+                        }
+                        other = states[parent - side];
+                        if (other < best && other >= reached && nodeWeights[o - side] < COST_BLOCKED) {
+                            // Point at the other side, the diagonal is then between it and the parent
+                            dir = (dir + 3) & 3;
+                            diagonals |= 1 << bit;
+                        }
+                    }
+                }
+                data |= dir << (2 * bit);
+            }
+        }
+        resultDiagonals = diagonals;
+        return data;
+    }
+
+    /** Broadcasts the diagonal bits of a chunk, two chunks share each word */
+    static void broadcastDiagonals(int chunkIndex, int diagonals) throws GameActionException {
+        int index = chunkIndex >> 1;
+        int shift = (chunkIndex & 1) << 4;
+        int value = (diagonalWords[index] & ~(0xFFFF << shift)) | (diagonals << shift);
+        if (value != diagonalWords[index]) {
+            diagonalWords[index] = value;
+            rc.broadcast(PATHFINDING_RESULT_DIAGONALS + index, value);
+        }
+    }
+
+    /** Packs the directions the nodes in a chunk were reached from into a single word, without any diagonal steps */
+    static int pathfindingParentWord(int chunkIndex) {
+        int cx = chunkIndex % CHUNKS_PER_ROW;
+        int cy = chunkIndex / CHUNKS_PER_ROW;
+        int data = 0;
+        // Iterate over all nodes in the chunk
+        int offset = cy * PATHFINDING_CHUNK_SIZE * PATHFINDING_WORLD_WIDTH + cx * PATHFINDING_CHUNK_SIZE;
+        for (int dy = 0; dy < PATHFINDING_CHUNK_SIZE; dy++) {
+            int o = offset + dy * PATHFINDING_WORLD_WIDTH;
+            int shift = 2 * dy * PATHFINDING_CHUNK_SIZE;
+            // Loop unrolled 4x
+            data |= ((nodeStates[o] & 3) << shift) | ((nodeStates[o + 1] & 3) << (shift + 2)) | ((nodeStates[o + 2] & 3) << (shift + 4)) | ((nodeStates[o + 3] & 3) << (shift + 6));
+        }
+        return data;
+    }
+
+    /**
+     * Broadcasts the result of a search from scratch along the grid, skipping words that have not changed since the last time.
+     * The diagonal steps take several times longer to work out, they are added afterwards by broadcastPathfindingDiagonals.
+     * Returns false if it ran out of time, in which case the next call continues where this one stopped.
+     */
+    boolean broadcastPathfindingResult() throws GameActionException {
+        broadcastRow = broadcastResultRows(broadcastRow, false);
+        if (broadcastRow < CHUNKS_PER_ROW) return false;
+
+        diagonalRow = 0;
+        return true;
+    }
+
+    /**
+     * Adds the diagonal steps to the result broadcast by broadcastPathfindingResult.
+     * Returns false if it ran out of time, in which case the next call continues where this one stopped.
+     */
+    boolean broadcastPathfindingDiagonals() throws GameActionException {
+        diagonalRow = broadcastResultRows(diagonalRow, true);
+        return diagonalRow == CHUNKS_PER_ROW;
+    }
+
+    /** Broadcasts the result for the chunks on the map from the given row on until it runs out of time, returns the next row */
+    private int broadcastResultRows(int row, boolean diagonal) throws GameActionException {
         assert (PATHFINDING_CHUNK_SIZE == 4);
 
-        for (int cy = 0; cy < PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE; cy++) {
+        for (; row < CHUNKS_PER_ROW; row++) {
+            if (Clock.getBytecodesLeft() < 3000) return row;
+
+            int cy = row;
             float wy = explorationOrigin.y + (cy + 0.5f) * PATHFINDING_CHUNK_SIZE * PATHFINDING_NODE_SIZE;
 
             // Don't bother broadcasting information for tiles outside the map
@@ -430,18 +1287,54 @@ class Archon extends Robot {
 
                 if (!onMapX(wx, -PATHFINDING_CHUNK_SIZE * PATHFINDING_NODE_SIZE * 0.5f)) continue;
 
-                int data = 0;
-                // Iterate over all nodes in the chunk
-                int offset = cy * PATHFINDING_CHUNK_SIZE * PATHFINDING_WORLD_WIDTH + cx * PATHFINDING_CHUNK_SIZE;
-                for (int dy = 0; dy < PATHFINDING_CHUNK_SIZE; dy++) {
-                    int o = offset + dy * PATHFINDING_WORLD_WIDTH;
-                    int shift = 2 * dy * PATHFINDING_CHUNK_SIZE;
-                    // Loop unrolled 4x
-                    data |= (parents[o] << shift) | (parents[o + 1] << (shift + 2)) | (parents[o + 2] << (shift + 4)) | (parents[o + 3] << (shift + 6));
+                int chunkIndex = cy * (PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE) + cx;
+                int data = diagonal ? pathfindingResultWord(chunkIndex) : pathfindingParentWord(chunkIndex);
+                if (data != resultWords[chunkIndex]) {
+                    resultWords[chunkIndex] = data;
+                    rc.broadcast(PATHFINDING_RESULT_TO_ENEMY_ARCHON + chunkIndex, data);
                 }
+                // Diagonal bits left from the previous result may not lead anywhere useful with the new directions
+                broadcastDiagonals(chunkIndex, diagonal ? resultDiagonals : 0);
+            }
+        }
+        return row;
+    }
+
+    /** Broadcasts the words containing nodes whose parent changed during a repair */
+    void broadcastChangedResults() throws GameActionException {
+        // The same chunk is usually changed many times
+        while (changedNodes.head != changedNodes.tail) {
+            if (Clock.getBytecodesLeft() < 1000) return;
+
+            int node = changedNodes.pollFirst();
+            // The directions of the neighbours depend on the cost of the node too, they may be in other chunks
+            int nx = node % PATHFINDING_WORLD_WIDTH;
+            int ny = node / PATHFINDING_WORLD_WIDTH;
+            int maxCx = (nx + 1) / PATHFINDING_CHUNK_SIZE;
+            int maxCy = (ny + 1) / PATHFINDING_CHUNK_SIZE;
+            for (int cy = (ny - 1) / PATHFINDING_CHUNK_SIZE; cy <= maxCy; cy++) {
+                for (int cx = (nx - 1) / PATHFINDING_CHUNK_SIZE; cx <= maxCx; cx++) {
+                    int chunkIndex = cy * CHUNKS_PER_ROW + cx;
+                    if (!chunkChanged[chunkIndex]) {
+                        chunkChanged[chunkIndex] = true;
+                        changedChunks.addLast(chunkIndex);
+                    }
+                }
+            }
+        }
+
+        while (changedChunks.head != changedChunks.tail) {
+            // The rest will be broadcast after the next pass
+            if (Clock.getBytecodesLeft() < 1000) return;
 
-                rc.broadcast(PATHFINDING_RESULT_TO_ENEMY_ARCHON + cy * (PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE) + cx, data);
+            int chunkIndex = changedChunks.pollFirst();
+            chunkChanged[chunkIndex] = false;
+            int data = pathfindingResultWord(chunkIndex);
+            if (data != resultWords[chunkIndex]) {
+                resultWords[chunkIndex] = data;
+                rc.broadcast(PATHFINDING_RESULT_TO_ENEMY_ARCHON + chunkIndex, data);
             }
+            broadcastDiagonals(chunkIndex, resultDiagonals);
         }
     }
 
@@ -449,7 +1342,7 @@ class Archon extends Robot {
         for (int y = 0; y < PATHFINDING_WORLD_WIDTH; y++) {
             for (int x = 0; x < PATHFINDING_WORLD_WIDTH; x++) {
                 int index = y * PATHFINDING_WORLD_WIDTH + x;
-                if (explored[index] == pathfindingIndex) {
+                if (nodeStates[index] >>> GENERATION_SHIFT == pathfindingIndex) {
                     MapLocation loc = explorationOrigin.translate((x + 0.5f) * PATHFINDING_NODE_SIZE, (y + 0.5f) * PATHFINDING_NODE_SIZE);
                     int chunk = pathfindingChunkDataForNode(x, y);
                     boolean blocked = ((chunk >> ((y % PATHFINDING_CHUNK_SIZE) * PATHFINDING_CHUNK_SIZE + (x % PATHFINDING_CHUNK_SIZE))) & 1) != 0;
@@ -470,9 +1363,9 @@ class Archon extends Robot {
         for (int y = 0; y < PATHFINDING_WORLD_WIDTH; y++) {
             for (int x = 0; x < PATHFINDING_WORLD_WIDTH; x++) {
                 int index = y * PATHFINDING_WORLD_WIDTH + x;
-                if (explored[index] == pathfindingIndex) {
+                if (nodeStates[index] >>> GENERATION_SHIFT == pathfindingIndex) {
                     MapLocation loc = explorationOrigin.translate((x + 0.5f) * PATHFINDING_NODE_SIZE, (y + 0.5f) * PATHFINDING_NODE_SIZE);
-                    debug_setIndicatorDot(loc, costs[index] / 120f);
+                    debug_setIndicatorDot(loc, stateCost(nodeStates[index]) / 120f);
                 }
             }
         }
@@ -0,0 +1,110 @@
+package bot;
+
+import battlecode.common.*;
+
+/**
+ * Schedules the tasks that run with the bytecodes left at the end of each turn.
+ * <p>
+ * Each task has a priority and a deadline in rounds. Tasks are run in order of priority,
+ * except that tasks which have not run for longer than their deadline go first.
+ * A task is only started if its moving average cost fits in the bytecodes that are left,
+ * otherwise it is postponed to a later turn so that it is never cut off by the end of the round.
+ * Overdue tasks are started as long as at least their minimum budget is left, so that an
+ * unusually expensive run cannot starve them forever.
+ * <p>
+ * Gardeners always shake trees, however few bytecodes are left.
+ * <p>
+ * Exploration can be suspended and resumed (see doChunkJob) so it only needs its minimum budget.
+ * Whatever is left after all tasks have had a chance to run is spent on exploring more chunks.
+ */
+class BackgroundTasks {
+    static final int DETERMINE_MAP_SIZE = 0;
+    static final int SHAKE_NEARBY_TREES = 1;
+    static final int BROADCAST_EXPLORATION = 2;
+    static final int BROADCAST_ENEMY_LOCATIONS = 3;
+    static final int TASK_COUNT = 4;
+
+    /** Bytecodes to keep for the end of the turn after the last task */
+    private static final int RESERVE = 100;
+    private static final int OVERDUE_PRIORITY = 100;
+    /** Maximum number of additional exploration runs per turn */
+    private static final int MAX_EXTRA_EXPLORATION = 6;
+
+    private static final int[] priority = {3, 2, 1, 3};
+    private static final int[] deadline = {5, 10, 10, 3};
+    private static final int[] minimumBudget = {1000, 300, 1500, 1000};
+    private static final boolean[] resumable = {false, false, true, false};
+
+    static final int[] averageCost = {1000, 300, 1500, 1000};
+    static final int[] lastRun = new int[TASK_COUNT];
+
+    static void run() throws GameActionException {
+        int round = Robot.rc.getRoundNum();
+        // Gardeners shake trees every turn whatever it costs, like they always have
+        boolean gardener = Robot.type == RobotType.GARDENER;
+        int shakePriority = gardener ? 4 : priority[SHAKE_NEARBY_TREES];
+
+        int done = 0;
+        while (true) {
+            int left = Clock.getBytecodesLeft() - RESERVE;
+            int best = -1;
+            int bestPriority = Integer.MIN_VALUE;
+            for (int i = 0; i < TASK_COUNT; i++) {
+                if ((done & (1 << i)) != 0) continue;
+
+                boolean overdue = round - lastRun[i] >= deadline[i];
+                boolean fits = resumable[i] || overdue ? left >= minimumBudget[i] : left >= averageCost[i];
+                if (gardener && i == SHAKE_NEARBY_TREES) fits = true;
+                int p = (i == SHAKE_NEARBY_TREES ? shakePriority : priority[i]) + (overdue ? OVERDUE_PRIORITY : 0);
+                if (fits && p > bestPriority) {
+                    best = i;
+                    bestPriority = p;
+                }
+            }
+
+            if (best == -1) break;
+
+            done |= 1 << best;
+            runTask(best, round);
+        }
+
+        for (int i = 0; i < MAX_EXTRA_EXPLORATION && Robot.hasChunkJob(); i++) {
+            if (Clock.getBytecodesLeft() - RESERVE < minimumBudget[BROADCAST_EXPLORATION]) break;
+            runTask(BROADCAST_EXPLORATION, round);
+        }
+    }
+
+    private static void runTask(int task, int round) throws GameActionException {
+        int startRound = Robot.rc.getRoundNum();
+        int start = Clock.getBytecodeNum();
+
+        switch (task) {
+            case DETERMINE_MAP_SIZE:
+                Profiler.begin(Robot.PROFILE_DETERMINE_MAP_SIZE);
+                Overruns.begin(Overruns.DETERMINE_MAP_SIZE);
+                Robot.determineMapSize();
+                break;
+            case SHAKE_NEARBY_TREES:
+                Profiler.begin(Robot.PROFILE_SHAKE_NEARBY_TREES);
+                Overruns.begin(Overruns.SHAKE_NEARBY_TREES);
+                Robot.shakeNearbyTrees();
+                break;
+            case BROADCAST_EXPLORATION:
+                Profiler.begin(Robot.PROFILE_BROADCAST_EXPLORATION);
+                Overruns.begin(Overruns.BROADCAST_EXPLORATION);
+                Robot.broadcastExploration();
+                break;
+            case BROADCAST_ENEMY_LOCATIONS:
+                Profiler.begin(Robot.PROFILE_BROADCAST_ENEMY_LOCATIONS);
+                Overruns.begin(Overruns.BROADCAST_ENEMY_LOCATIONS);
+                Robot.broadcastEnemyLocations();
+                break;
+        }
+        Overruns.end();
+        Profiler.end();
+
+        int cost = Clock.getBytecodeNum() - start + (Robot.rc.getRoundNum() - startRound) * Robot.type.bytecodeLimit;
+        averageCost[task] += (cost - averageCost[task]) / 4;
+        lastRun[task] = round;
+    }
+}
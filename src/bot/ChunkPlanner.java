@@ -0,0 +1,375 @@
+package bot;
+
+import battlecode.common.*;
+
+/**
+ * Plans long routes over the grid of pathfinding chunks, so that any robot can find a path within its own budget
+ * instead of relying on the archon's search over every node.
+ * <p>
+ * The abstract graph has one node per chunk, with an edge to each neighbouring chunk if some node along the shared
+ * border is free on both sides. Because a wall inside a chunk may separate its sides, the search keeps track of
+ * the side each chunk was entered from and only leaves through sides that can be reached from it (see loadChunk).
+ * Edge costs come from the blocked bits of the chunk words. They are cached per robot and dropped whenever the
+ * chunk change log (see Robot.logChunkChange) reports that one of the two chunks has changed.
+ * <p>
+ * The route is only refined into nodes near the robot: {@link #nextWaypoint} returns the node just across the
+ * border to the next chunk on the route.
+ */
+class ChunkPlanner {
+    private static final int CHUNKS_PER_ROW = Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE;
+    private static final int CHUNK_COUNT = CHUNKS_PER_ROW * CHUNKS_PER_ROW;
+
+    /** Nodes on each side of a chunk, in the same order as Robot.dx and Robot.dy */
+    private static final int[] sideMasks = {0x8888, 0xF000, 0x1111, 0x000F};
+    private static final int[] bitCounts = {0, 1, 1, 2, 1, 2, 2, 3, 1, 2, 2, 3, 2, 3, 3, 4};
+    private static final int[] chunkOffsets = {1, CHUNKS_PER_ROW, -1, -CHUNKS_PER_ROW};
+
+    /** Cost of crossing a chunk that has been fully explored, per node */
+    static final int COST_FREE = 2;
+    /** Cost of crossing a chunk that has not been fully explored yet, per node */
+    static final int COST_UNKNOWN = 3;
+    /** Extra cost for every blocked node in a chunk and every blocked node along the border to it */
+    static final int COST_OBSTRUCTION = 2;
+    /**
+     * Estimated cost of crossing a chunk used by the heuristic. This is a little more than the cheapest crossing,
+     * which makes the search much faster at the price of sometimes finding a slightly more expensive route.
+     */
+    private static final int CROSSING_ESTIMATE = Robot.PATHFINDING_CHUNK_SIZE * COST_FREE + COST_OBSTRUCTION;
+
+    /** Flags of a chunk that has been loaded, kept apart from its info which needs all 32 bits */
+    private static final int LOADED = 1;
+    private static final int ON_MAP = 2;
+    private static final int EXPLORED = 4;
+
+    /**
+     * Information about each chunk, valid if its flags are set.
+     * Bits 0-15 are set for free nodes, bit 16 + 4 * s + t is set if side t can be reached from side s.
+     */
+    private static int[] chunkInfo = null;
+    /** Flags of each chunk, 0 if it has not been loaded since it last changed */
+    private static int[] chunkFlags = null;
+    /** Cost of each crossing into the neighbouring chunk in each direction, 0 if not calculated, -1 if impossible */
+    private static int[] edgeCosts = null;
+    private static int changesSeen = 0;
+
+    // Search over states chunk * 4 + side, where side is the side the chunk was entered from
+    private static int[] costs = null;
+    private static int[] parents = null;
+    private static int[] visited = null;
+    /** Binary heap of (cost + heuristic) << 18 | heuristic << 12 | state, so ties go to the state closest to the goal */
+    private static int[] heap = null;
+    private static int heapSize = 0;
+    private static int searchIndex = 0;
+    private static boolean searching = false;
+    private static int startChunk = -1;
+    private static int goalChunk = -1;
+
+    /** Next chunk on the route from each chunk, valid if routeIndex matches planIndex */
+    private static int[] routeNext = null;
+    private static int[] routeIndex = null;
+    private static int planIndex = 0;
+    private static int plannedGoal = -1;
+    /** True if a chunk on the route has changed since it was planned */
+    private static boolean routeChanged = false;
+
+    /** Allocates the planner state, forgetting any cached chunks and routes */
+    static void allocate() throws GameActionException {
+        chunkInfo = new int[CHUNK_COUNT];
+        chunkFlags = new int[CHUNK_COUNT];
+        edgeCosts = new int[CHUNK_COUNT * 4];
+        costs = new int[CHUNK_COUNT * 4];
+        parents = new int[CHUNK_COUNT * 4];
+        visited = new int[CHUNK_COUNT * 4];
+        heap = new int[CHUNK_COUNT * 4];
+        routeNext = new int[CHUNK_COUNT];
+        routeIndex = new int[CHUNK_COUNT];
+        changesSeen = Robot.rc.readBroadcast(Robot.PATHFINDING_CHANGE_COUNT);
+        searching = false;
+        plannedGoal = -1;
+    }
+
+    static int chunkOf(MapLocation loc) {
+        int node = Robot.snapToNode(loc);
+        return (node / Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE) * CHUNKS_PER_ROW + (node % Robot.PATHFINDING_WORLD_WIDTH) / Robot.PATHFINDING_CHUNK_SIZE;
+    }
+
+    /**
+     * Next point on a route to the target, or null if the robot is already in the same chunk as the target,
+     * if there is no route, or if the route is not ready yet. Planning continues in the next call if it ran out of time.
+     */
+    static MapLocation waypointTowards(MapLocation target) throws GameActionException {
+        if (chunkInfo == null) allocate();
+        applyChanges();
+
+        MapLocation loc = Robot.rc.getLocation();
+        int start = chunkOf(loc);
+        int goal = chunkOf(target);
+        if (start == goal) return null;
+
+        boolean onRoute = plannedGoal == goal && routeIndex[start] == planIndex && !routeChanged;
+        if (!onRoute) {
+            if (!searching || goalChunk != goal) startSearch(start, goal);
+            if (!search()) return null;
+        }
+        return nextWaypoint(loc);
+    }
+
+    /** Drops the cached information about chunks that have changed */
+    static void applyChanges() throws GameActionException {
+        int count = Robot.rc.readBroadcast(Robot.PATHFINDING_CHANGE_COUNT);
+        if (count - changesSeen > Robot.PATHFINDING_CHANGE_LOG_SIZE) {
+            // Too many changes have been missed
+            for (int i = 0; i < CHUNK_COUNT; i++) chunkFlags[i] = 0;
+            for (int i = 0; i < CHUNK_COUNT * 4; i++) edgeCosts[i] = 0;
+            routeChanged = true;
+            changesSeen = count;
+            return;
+        }
+
+        for (; changesSeen < count; changesSeen++) {
+            int chunk = Robot.rc.readBroadcast(Robot.PATHFINDING_CHANGE_LOG + changesSeen % Robot.PATHFINDING_CHANGE_LOG_SIZE);
+            chunkFlags[chunk] = 0;
+            for (int i = 0; i < 4; i++) {
+                edgeCosts[chunk * 4 + i] = 0;
+                int neighbour = chunk + chunkOffsets[i];
+                if (neighbour >= 0 && neighbour < CHUNK_COUNT) edgeCosts[neighbour * 4 + ((i + 2) & 3)] = 0;
+            }
+            if (routeIndex[chunk] == planIndex) routeChanged = true;
+        }
+    }
+
+    /**
+     * Reads a chunk word and calculates which sides of the chunk can be reached from each other
+     * by flood filling the free nodes from the border. Chunks off the map get flags without ON_MAP.
+     */
+    static int loadChunk(int chunk) throws GameActionException {
+        int cx = chunk % CHUNKS_PER_ROW;
+        int cy = chunk / CHUNKS_PER_ROW;
+        float size = Robot.PATHFINDING_CHUNK_SIZE * Robot.PATHFINDING_NODE_SIZE;
+        MapLocation center = Robot.explorationOrigin.translate((cx + 0.5f) * size, (cy + 0.5f) * size);
+        if (!Robot.onMap(center, -size * 0.5f)) {
+            chunkInfo[chunk] = 0;
+            chunkFlags[chunk] = LOADED;
+            return 0;
+        }
+
+        int word = Robot.rc.readBroadcast(Robot.PATHFINDING + chunk);
+        int free = ~word & 0xFFFF;
+        int info = free;
+        if (free == 0xFFFF) {
+            info |= 0xFFFF << 16;
+        } else {
+            // Flood fill each connected group of free border nodes, the sides it touches can all reach each other
+            int remaining = free & 0xF99F;
+            while (remaining != 0) {
+                int reached = remaining & -remaining;
+                while (true) {
+                    int next = (reached | ((reached << 1) & ~0x1111) | ((reached >>> 1) & ~0x8888) | (reached << 4) | (reached >>> 4)) & free;
+                    if (next == reached) break;
+                    reached = next;
+                }
+                remaining &= ~reached;
+                int sides = 0;
+                for (int t = 0; t < 4; t++) {
+                    if ((reached & sideMasks[t]) != 0) sides |= 1 << t;
+                }
+                for (int t = 0; t < 4; t++) {
+                    if ((sides & (1 << t)) != 0) info |= sides << (16 + 4 * t);
+                }
+            }
+        }
+        chunkInfo[chunk] = info;
+        chunkFlags[chunk] = word < 0 ? LOADED | ON_MAP | EXPLORED : LOADED | ON_MAP;
+        return info;
+    }
+
+    /** Cost of moving from the chunk into its neighbour in the given direction, or -1 if they are not connected */
+    static int edgeCost(int chunk, int dir) throws GameActionException {
+        int cached = edgeCosts[chunk * 4 + dir];
+        if (cached != 0) return cached;
+
+        int cost = -1;
+        int cx = chunk % CHUNKS_PER_ROW + Robot.dx[dir];
+        int cy = chunk / CHUNKS_PER_ROW + Robot.dy[dir];
+        if (cx >= 0 && cy >= 0 && cx < CHUNKS_PER_ROW && cy < CHUNKS_PER_ROW) {
+            int neighbour = chunk + chunkOffsets[dir];
+            int from = chunkFlags[chunk] != 0 ? chunkInfo[chunk] : loadChunk(chunk);
+            int to = chunkFlags[neighbour] != 0 ? chunkInfo[neighbour] : loadChunk(neighbour);
+
+            if ((chunkFlags[chunk] & chunkFlags[neighbour] & ON_MAP) != 0) {
+                // Nodes on the side of this chunk moved onto the matching side of the neighbour
+                int exits = from & sideMasks[dir];
+                int entrances;
+                switch (dir) {
+                    case 0: entrances = (exits >>> 3) & to; break;
+                    case 1: entrances = (exits >>> 12) & to; break;
+                    case 2: entrances = (exits << 3) & to; break;
+                    default: entrances = (exits << 12) & to; break;
+                }
+                if (entrances != 0) {
+                    int width = Integer.bitCount(entrances);
+                    int blocked = 16 - bitCounts[to & 0xF] - bitCounts[(to >>> 4) & 0xF] - bitCounts[(to >>> 8) & 0xF] - bitCounts[(to >>> 12) & 0xF];
+                    int step = (chunkFlags[neighbour] & EXPLORED) != 0 ? COST_FREE : COST_UNKNOWN;
+                    cost = Robot.PATHFINDING_CHUNK_SIZE * step + COST_OBSTRUCTION * (blocked + Robot.PATHFINDING_CHUNK_SIZE - width);
+                }
+            }
+        }
+        edgeCosts[chunk * 4 + dir] = cost;
+        return cost;
+    }
+
+    static void startSearch(int start, int goal) {
+        searchIndex++;
+        heapSize = 0;
+        searching = true;
+        startChunk = start;
+        goalChunk = goal;
+        // The robot may be anywhere in the start chunk so it may leave through any side
+        for (int side = 0; side < 4; side++) {
+            int state = start * 4 + side;
+            visited[state] = searchIndex;
+            costs[state] = 0;
+            int h = heuristic(start);
+            push(h * CROSSING_ESTIMATE << 18 | h << 12 | state);
+        }
+    }
+
+    /** Number of chunks between the chunk and the goal, each estimated to cost CROSSING_ESTIMATE to cross */
+    private static int heuristic(int chunk) {
+        return (Math.abs(chunk % CHUNKS_PER_ROW - goalChunk % CHUNKS_PER_ROW) + Math.abs(chunk / CHUNKS_PER_ROW - goalChunk / CHUNKS_PER_ROW));
+    }
+
+    /**
+     * Continues the A* search until the goal chunk is reached.
+     * Returns false if it ran out of time, or if there is no route (in which case the search is abandoned).
+     */
+    static boolean search() throws GameActionException {
+        while (heapSize > 0) {
+            if (Clock.getBytecodesLeft() < 1500) return false;
+
+            int state = pop() & 0xFFF;
+            int chunk = state >> 2;
+            int side = state & 3;
+            int cost = costs[state];
+            if (chunk == goalChunk) {
+                storeRoute(state);
+                searching = false;
+                return true;
+            }
+
+            int info = chunkFlags[chunk] != 0 ? chunkInfo[chunk] : loadChunk(chunk);
+            for (int dir = 0; dir < 4; dir++) {
+                // The start state can leave through any side
+                if (chunk != startChunk && (info & (1 << (16 + 4 * side + dir))) == 0) continue;
+
+                int edge = edgeCost(chunk, dir);
+                if (edge < 0) continue;
+
+                int next = chunk + chunkOffsets[dir];
+                int nextState = next * 4 + ((dir + 2) & 3);
+                int nextCost = cost + edge;
+                if (visited[nextState] == searchIndex && nextCost >= costs[nextState]) continue;
+
+                visited[nextState] = searchIndex;
+                costs[nextState] = nextCost;
+                parents[nextState] = state;
+                int h = heuristic(next);
+                push((nextCost + h * CROSSING_ESTIMATE) << 18 | h << 12 | nextState);
+            }
+        }
+
+        searching = false;
+        return false;
+    }
+
+    private static void storeRoute(int state) {
+        planIndex++;
+        plannedGoal = goalChunk;
+        routeChanged = false;
+        int chunk = state >> 2;
+        routeIndex[chunk] = planIndex;
+        routeNext[chunk] = -1;
+        while (chunk != startChunk) {
+            int previous = parents[state];
+            int previousChunk = previous >> 2;
+            routeIndex[previousChunk] = planIndex;
+            routeNext[previousChunk] = chunk;
+            state = previous;
+            chunk = previousChunk;
+        }
+    }
+
+    /** True if the chunk is on the last route that was planned */
+    static boolean isOnRoute(int chunk) {
+        return routeIndex != null && planIndex > 0 && routeIndex[chunk] == planIndex;
+    }
+
+    /**
+     * Node just across the border from the chunk containing the location to the next chunk on the route,
+     * choosing the free border node closest to the location. Returns null if the location is not on the route.
+     */
+    static MapLocation nextWaypoint(MapLocation loc) throws GameActionException {
+        int chunk = chunkOf(loc);
+        if (routeIndex[chunk] != planIndex || routeNext[chunk] < 0) return null;
+
+        int next = routeNext[chunk];
+        int dir = 0;
+        while (chunk + chunkOffsets[dir] != next) dir++;
+
+        int from = chunkFlags[chunk] != 0 ? chunkInfo[chunk] : loadChunk(chunk);
+        int to = chunkFlags[next] != 0 ? chunkInfo[next] : loadChunk(next);
+        int entrances = to & sideMasks[(dir + 2) & 3];
+
+        int node = Robot.snapToNode(loc);
+        int x0 = (next % CHUNKS_PER_ROW) * Robot.PATHFINDING_CHUNK_SIZE;
+        int y0 = (next / CHUNKS_PER_ROW) * Robot.PATHFINDING_CHUNK_SIZE;
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int bit = 0; bit < 16; bit++) {
+            if ((entrances & (1 << bit)) == 0) continue;
+
+            int x = x0 + (bit & 3);
+            int y = y0 + (bit >> 2);
+            // The node on this side of the border must be free too
+            int bx = (bit & 3) - Robot.dx[dir];
+            int by = (bit >> 2) - Robot.dy[dir];
+            if ((from & (1 << ((by & 3) * 4 + (bx & 3)))) == 0) continue;
+
+            int distance = Math.abs(x - node % Robot.PATHFINDING_WORLD_WIDTH) + Math.abs(y - node / Robot.PATHFINDING_WORLD_WIDTH);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = bit;
+            }
+        }
+        if (best == -1) return null;
+
+        return Robot.nodePosition(x0 + (best & 3), y0 + (best >> 2));
+    }
+
+    private static void push(int value) {
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (heap[parent] <= value) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    private static int pop() {
+        int result = heap[0];
+        int value = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= value) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+        return result;
+    }
+}
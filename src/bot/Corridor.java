@@ -0,0 +1,133 @@
+package bot;
+
+import battlecode.common.*;
+
+/**
+ * Cached stretch of the path to the enemy archons, so that a marching unit does not have to follow
+ * the flow field and check line of sight from scratch every tick.
+ * <p>
+ * The corridor is a list of nodes built by following the field from the unit's node. It is reused as long as
+ * the unit stays on or next to it and the result words of the chunks it passes through have not changed.
+ * Line of sight is checked incrementally: each tick at most one more waypoint is tested with a linecast,
+ * and the furthest waypoint known to be visible is returned as the target.
+ */
+class Corridor {
+    private static final int MAX_LENGTH = 10;
+    /** The corridor is extended when the unit is this close to its end */
+    private static final int EXTEND_DISTANCE = 3;
+
+    private static final int[] nodes = new int[MAX_LENGTH];
+    private static final MapLocation[] waypoints = new MapLocation[MAX_LENGTH];
+    private static int length = 0;
+    /** Index of the node the unit was last seen on */
+    private static int current = 0;
+    /** Furthest waypoint that was visible from the unit, at least the one after the current node */
+    private static int visible = 0;
+    /** True if the waypoint after the visible one was found to be blocked, checked again when the unit advances */
+    private static boolean blocked = false;
+
+    /** Chunks the corridor passes through and their result words when it was built */
+    private static final int[] chunks = new int[MAX_LENGTH];
+    private static final int[] resultWords = new int[MAX_LENGTH];
+    private static final int[] diagonalWords = new int[MAX_LENGTH];
+    private static int chunkCount = 0;
+
+    /**
+     * Furthest point along the path to the enemy archons that can be walked to in a straight line
+     * as far as is known, building a new corridor if necessary.
+     */
+    static MapLocation target() throws GameActionException {
+        MapLocation loc = Robot.rc.getLocation();
+        int node = Robot.snapToNode(loc);
+        if (!follow(node) || !isUpToDate() || (length == MAX_LENGTH && current >= MAX_LENGTH - EXTEND_DISTANCE)) {
+            build(loc, node);
+        }
+
+        if (!blocked && visible + 1 < length) {
+            MapLocation next = waypoints[visible + 1];
+            if (loc.isWithinDistance(next, Robot.type.sensorRadius - Robot.type.bodyRadius) && Robot.linecast(next) == null) {
+                visible++;
+            } else {
+                blocked = true;
+            }
+        }
+
+        return waypoints[visible];
+    }
+
+    /** Moves along the corridor to the node, returns false if the unit has left the corridor */
+    private static boolean follow(int node) {
+        if (length == 0) return false;
+
+        for (int i = current; i < length; i++) {
+            if (nodes[i] == node) {
+                if (i != current) {
+                    current = i;
+                    blocked = false;
+                    if (visible <= i) visible = Math.min(i + 1, length - 1);
+                }
+                return true;
+            }
+        }
+
+        // Moving around bullets and units may take the unit a bit off the corridor
+        int x = node % Robot.PATHFINDING_WORLD_WIDTH;
+        int y = node / Robot.PATHFINDING_WORLD_WIDTH;
+        int on = nodes[current];
+        return Math.abs(on % Robot.PATHFINDING_WORLD_WIDTH - x) <= 1 && Math.abs(on / Robot.PATHFINDING_WORLD_WIDTH - y) <= 1;
+    }
+
+    /** True if the path through the chunks of the corridor is still the same */
+    private static boolean isUpToDate() throws GameActionException {
+        for (int i = 0; i < chunkCount; i++) {
+            int chunk = chunks[i];
+            if (Robot.rc.readBroadcast(Robot.PATHFINDING_RESULT_TO_ENEMY_ARCHON + chunk) != resultWords[i]) return false;
+            if (Robot.rc.readBroadcast(Robot.PATHFINDING_RESULT_DIAGONALS + (chunk >> 1)) != diagonalWords[i]) return false;
+        }
+        return true;
+    }
+
+    /** True if the current corridor passes through the chunk */
+    static boolean passesThrough(int chunk) {
+        for (int i = 0; i < chunkCount; i++) {
+            if (chunks[i] == chunk) return true;
+        }
+        return false;
+    }
+
+    private static void build(MapLocation loc, int node) throws GameActionException {
+        length = 0;
+        chunkCount = 0;
+        current = 0;
+        visible = 0;
+        blocked = false;
+
+        nodes[0] = node;
+        waypoints[0] = loc;
+        length = 1;
+        addChunk(node);
+        while (length < MAX_LENGTH) {
+            MapLocation next = Robot.nextPointOnPathToEnemyArchon(waypoints[length - 1]);
+            int nextNode = Robot.snapToNode(next);
+            // The path ends at the seeds
+            if (nextNode == nodes[length - 1] || (length >= 2 && nextNode == nodes[length - 2])) break;
+
+            nodes[length] = nextNode;
+            waypoints[length] = next;
+            length++;
+            addChunk(nextNode);
+        }
+        // The first step along the field can always be taken
+        visible = Math.min(1, length - 1);
+    }
+
+    private static void addChunk(int node) throws GameActionException {
+        int chunk = (node / Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE) * (Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE) + (node % Robot.PATHFINDING_WORLD_WIDTH) / Robot.PATHFINDING_CHUNK_SIZE;
+        if (chunkCount > 0 && chunks[chunkCount - 1] == chunk) return;
+
+        chunks[chunkCount] = chunk;
+        resultWords[chunkCount] = Robot.rc.readBroadcast(Robot.PATHFINDING_RESULT_TO_ENEMY_ARCHON + chunk);
+        diagonalWords[chunkCount] = Robot.rc.readBroadcast(Robot.PATHFINDING_RESULT_DIAGONALS + (chunk >> 1));
+        chunkCount++;
+    }
+}
@@ -0,0 +1,129 @@
+package bot;
+
+import battlecode.common.*;
+
+/**
+ * Registry of the flow fields that the archon broadcasts for other units to follow.
+ * <p>
+ * Each field has a region of channels with one word per pathfinding chunk holding the direction each node
+ * was reached from (see Robot.nextPointOnPath), and a channel at PATHFINDING_FIELD_ROUNDS + field holding
+ * the round it was last refreshed in.
+ * <p>
+ * The field to the enemy archons is maintained continuously by the archon's exact search and repaired whenever
+ * chunks change. The other fields are recomputed from scratch with the wave search (see Archon.expandWaves)
+ * when their cadence has passed or their seeds have changed. They are maintained in order of priority as long as
+ * their average cost per round fits in half of the archon's spare bytecodes. A field that does not fit is skipped,
+ * so with a tight budget the cheaper ones after it may still be kept up to date.
+ * Readers ignore fields that have not been refreshed recently.
+ */
+class FlowFields {
+    static final int ENEMY_ARCHONS = 0;
+    static final int OUR_ARCHONS = 1;
+    static final int HOT_TARGET = 2;
+    static final int FRONTIER = 3;
+    static final int FIELD_COUNT = 4;
+
+    static final int[] channels = {
+            Robot.PATHFINDING_RESULT_TO_ENEMY_ARCHON,
+            Robot.PATHFINDING_RESULT_TO_OUR_ARCHONS,
+            Robot.PATHFINDING_RESULT_TO_HOT_TARGET,
+            Robot.PATHFINDING_RESULT_TO_FRONTIER,
+    };
+    /** Channels with the diagonal bits of each field, -1 if the field only moves along the grid */
+    static final int[] diagonalChannels = {Robot.PATHFINDING_RESULT_DIAGONALS, -1, -1, -1};
+    /**
+     * Rounds between refreshes, the first field is maintained continuously.
+     * With the starting estimates below all three fields cost 6500 bytecodes per round, which fits an archon
+     * that has 13000 of its 20000 bytecodes left for pathfinding.
+     */
+    private static final int[] cadence = {0, 200, 100, 150};
+    /** Readers ignore a field that has not been refreshed for this many rounds */
+    static final int[] expiry = {Integer.MAX_VALUE, 600, 300, 450};
+    /** Minimum number of rounds between refreshes caused by the seeds changing */
+    private static final int MIN_REFRESH_INTERVAL = 5;
+
+    /** Average bytecodes of a refresh, starting with roughly the cost of a wave search over a large map */
+    static final int[] averageCost = {0, 300000, 300000, 300000};
+    static final int[] lastRefresh = {0, -1000000, -1000000, -1000000};
+    /** First seed each field was last refreshed with */
+    private static final int[] lastSeed = {-1, -1, -1, -1};
+    /** Moving average of the bytecodes the archon has left for pathfinding each turn */
+    static int spareBytecodes = 0;
+
+    static final int[] seeds = new int[GameConstants.NUMBER_OF_ARCHONS_MAX];
+    static int seedCount = 0;
+
+    /** Forgets when the fields were refreshed, all of them are refreshed again as soon as possible */
+    static void reset() {
+        for (int field = ENEMY_ARCHONS + 1; field < FIELD_COUNT; field++) {
+            lastRefresh[field] = -1000000;
+            lastSeed[field] = -1;
+        }
+    }
+
+    static void recordSpareBytecodes(int left) {
+        spareBytecodes += (left - spareBytecodes) / 8;
+    }
+
+    /**
+     * Picks the field that should be refreshed next and collects its seeds.
+     * Returns -1 if no field is due or there are not enough spare bytecodes for it.
+     */
+    static int pickField() throws GameActionException {
+        int round = Robot.rc.getRoundNum();
+        int budget = spareBytecodes / 2;
+        for (int field = ENEMY_ARCHONS + 1; field < FIELD_COUNT; field++) {
+            int cost = averageCost[field] / cadence[field];
+            if (cost > budget) continue;
+
+            budget -= cost;
+            int since = round - lastRefresh[field];
+            if (since < MIN_REFRESH_INTERVAL || !collectSeeds(field)) continue;
+
+            int seed = seedCount > 0 ? seeds[0] : -1;
+            if (since >= cadence[field] || seed != lastSeed[field]) return field;
+        }
+        return -1;
+    }
+
+    /**
+     * Collects the nodes the field should be searched from.
+     * The frontier has no seed nodes, it is searched from every chunk that has not been fully explored.
+     * Returns false if the field has nothing to search from.
+     */
+    static boolean collectSeeds(int field) throws GameActionException {
+        seedCount = 0;
+        switch (field) {
+            case OUR_ARCHONS:
+                for (MapLocation archon : Robot.ourInitialArchonLocations) {
+                    seeds[seedCount++] = Robot.snapToNode(archon);
+                }
+                return true;
+            case HOT_TARGET:
+                float bestPriority = 0.5f;
+                for (int i = 0; i < Robot.NUMBER_OF_TARGETS; i++) {
+                    int offset = Robot.TARGET_OFFSET + 10 * i;
+                    int timeSpotted = Robot.rc.readBroadcast(offset);
+                    float priority = Robot.rc.readBroadcastFloat(offset + 1) / (Robot.rc.getRoundNum() - timeSpotted + 5.0f);
+                    if (priority > bestPriority && timeSpotted > Robot.rc.getRoundNum() - 300) {
+                        bestPriority = priority;
+                        seeds[0] = Robot.snapToNode(Robot.readBroadcastPosition(offset + 2));
+                        seedCount = 1;
+                    }
+                }
+                return seedCount > 0;
+            case FRONTIER:
+                return true;
+        }
+        return false;
+    }
+
+    /** Records that the field has been refreshed with the seeds collected for it */
+    static void refreshed(int field, int cost) throws GameActionException {
+        int round = Robot.rc.getRoundNum();
+        lastRefresh[field] = round;
+        lastSeed[field] = seedCount > 0 ? seeds[0] : -1;
+        averageCost[field] += (cost - averageCost[field]) / 4;
+        Robot.rc.broadcast(Robot.PATHFINDING_FIELD_ROUNDS + field, round);
+    }
+}
@@ -0,0 +1,338 @@
+package bot;
+
+import battlecode.common.*;
+
+/**
+ * Plans moves around nearby obstacles on a fine grid centered on the unit.
+ * <p>
+ * The grid has 32x32 cells of 0.5 units, stored as one int per row with bit i set for column i.
+ * Trees and robots from one call each to senseNearbyTrees and senseNearbyRobots are rasterized into it,
+ * grown by the unit's radius so that a cell is free exactly when the unit fits at its center.
+ * The search is a bit-parallel breadth first search from the unit's cell: each wave spreads the reached cells
+ * to all 8 neighbours with a few shifts per row, like the archon's wave search (see Archon.expandWaves).
+ * Each wave costs the same for every row it covers, so like A* the search is limited to a path length: a cell
+ * is dropped once it is further from the target than the waves left, which leaves a square around the target
+ * that shrinks with every wave. The first search allows little more than a straight path, and if it fails the
+ * next ones allow longer and longer detours, up to no limit at all.
+ * It stops when the cell of the target is reached or when nothing new is reached, and the unit heads for the
+ * reached cell closest to the target. A search that runs out of bytecodes does the same with what it has reached
+ * so far, and starts over from the new position in the next turn.
+ * <p>
+ * The path found is kept and followed in the next turns as long as the target stays the same and the next
+ * points on it can be moved to, so the search only runs again when the path is used up or blocked.
+ */
+class LocalPlanner {
+    static final int SIZE = 32;
+    static final float CELL_SIZE = 0.5f;
+    /** Column and row of the cell at the unit's position */
+    private static final int CENTER = SIZE / 2;
+    private static final int MAX_WAVES = 40;
+    /** Waves beyond a straight path that the first search allows, doubled every time a search fails */
+    private static final int MIN_SLACK = 2;
+    /** Searches that need a longer detour than this are not limited */
+    private static final int MAX_SLACK = 16;
+    /** Path length that never drops a cell */
+    private static final int UNLIMITED = MAX_WAVES + 2 * SIZE;
+    /** Bytecodes kept in reserve for walking back along the path and moving after the search */
+    private static final int RESERVE = 3000;
+    /** Obstacles are grown by this much so that the unit does not end up exactly touching them */
+    private static final float MARGIN = 0.01f;
+
+    private static final int[] free = new int[SIZE];
+    /**
+     * Cells reached after each wave that are still close enough to the goal.
+     * Two extra rows at the end are read by the wave after a row that is the last one of the grid.
+     */
+    private static final int[][] waves = new int[MAX_WAVES + 1][SIZE + 2];
+    /** Rows that may have reached cells in each wave, the others are not up to date */
+    private static final int[] minRows = new int[MAX_WAVES + 1];
+    private static final int[] maxRows = new int[MAX_WAVES + 1];
+    private static int waveCount = 0;
+    /** Cell the search is trying to reach */
+    private static int goalX;
+    private static int goalY;
+    /** Number of waves of a straight path to the goal, and the number the current search is limited to */
+    private static int straightWaves;
+    private static int slack;
+    private static int maxLength;
+
+    /** Points on the path found by the last search, from the unit's position at the time */
+    private static final MapLocation[] path = new MapLocation[MAX_WAVES + 1];
+    private static int pathLength = 0;
+    private static int pathIndex = 0;
+    private static MapLocation pathTarget = null;
+
+    /**
+     * Moves towards the target around the obstacles in the way.
+     * Returns false if the straight line to the target is not obstructed at all, or if no move was found.
+     * Returns true if the unit moved.
+     */
+    static boolean move(MapLocation target) throws GameActionException {
+        MapLocation loc = Robot.rc.getLocation();
+        Direction dirToTarget = loc.directionTo(target);
+        if (dirToTarget == null || Robot.rc.canMove(dirToTarget, Math.min(loc.distanceTo(target), Robot.type.strideRadius))) {
+            pathLength = 0;
+            return false;
+        }
+
+        if (pathLength > 0 && target.equals(pathTarget) && followPath(loc)) return true;
+
+        startSearch(loc, target);
+        boolean done = expand();
+        buildPath(loc);
+        boolean moved = followPath(loc);
+        // The rest of a partial path may lead into a dead end that the full search would have avoided
+        if (!done) pathLength = 0;
+        return moved;
+    }
+
+    /** Moves to the furthest point on the path within reach, returns false if none of them can be moved to */
+    private static boolean followPath(MapLocation loc) throws GameActionException {
+        int furthest = pathIndex;
+        while (furthest + 1 < pathLength && loc.isWithinDistance(path[furthest + 1], Robot.type.strideRadius)) furthest++;
+
+        for (int i = furthest; i > pathIndex; i--) {
+            if (Robot.rc.canMove(path[i])) {
+                Robot.rc.move(path[i]);
+                pathIndex = i;
+                return true;
+            }
+        }
+        pathLength = 0;
+        return false;
+    }
+
+    private static void startSearch(MapLocation loc, MapLocation target) throws GameActionException {
+        pathLength = 0;
+        pathTarget = target;
+        rasterize(loc);
+
+        // Cell of the target, or the cell along the way to it on the edge of the grid
+        float tx = CENTER + (target.x - loc.x) / CELL_SIZE;
+        float ty = CENTER + (target.y - loc.y) / CELL_SIZE;
+        float outside = Math.max(Math.abs(tx - CENTER), Math.abs(ty - CENTER)) / (CENTER - 1);
+        if (outside > 1) {
+            tx = CENTER + (tx - CENTER) / outside;
+            ty = CENTER + (ty - CENTER) / outside;
+        }
+        goalX = Math.round(tx);
+        goalY = Math.round(ty);
+        straightWaves = Math.max(Math.abs(goalX - CENTER), Math.abs(goalY - CENTER));
+        // A goal that can not be reached would fail every limited search
+        restartSearch(((free[goalY] >>> goalX) & 1) != 0 ? MIN_SLACK : 2 * MAX_SLACK);
+    }
+
+    /** Starts over with a search limited to the given number of waves more than a straight path */
+    private static void restartSearch(int newSlack) {
+        slack = newSlack;
+        maxLength = slack > MAX_SLACK ? UNLIMITED : straightWaves + slack;
+
+        int[] reached = waves[0];
+        reached[CENTER - 1] = 0;
+        reached[CENTER] = 1 << CENTER;
+        reached[CENTER + 1] = 0;
+        reached[CENTER + 2] = 0;
+        minRows[0] = CENTER;
+        maxRows[0] = CENTER;
+        waveCount = 0;
+    }
+
+    /** True if the cell was reached in the given wave */
+    private static boolean isReached(int wave, int x, int y) {
+        return y >= minRows[wave] && y <= maxRows[wave] && ((waves[wave][y] >>> x) & 1) != 0;
+    }
+
+    /** Walks back from the reached cell closest to the goal to the unit */
+    private static void buildPath(MapLocation loc) {
+        pathIndex = 0;
+        int best = closestReached();
+        if (best < 0) return;
+
+        int x = best % SIZE;
+        int y = best / SIZE;
+        int wave = waveCount;
+        while (wave > 0 && isReached(wave - 1, x, y)) wave--;
+        pathLength = wave + 1;
+        path[wave] = loc.translate((x - CENTER) * CELL_SIZE, (y - CENTER) * CELL_SIZE);
+        while (wave > 0) {
+            wave--;
+            int previous = previousCell(wave, x, y);
+            x = previous % SIZE;
+            y = previous / SIZE;
+            path[wave] = loc.translate((x - CENTER) * CELL_SIZE, (y - CENTER) * CELL_SIZE);
+        }
+    }
+
+    /** Marks the cells where the unit would not fit */
+    static void rasterize(MapLocation loc) throws GameActionException {
+        float radius = Robot.type.bodyRadius;
+        float x0 = loc.x - CENTER * CELL_SIZE;
+        float y0 = loc.y - CENTER * CELL_SIZE;
+
+        // Map edges, only the known ones
+        int minX = Math.max(0, (int)Math.ceil((Robot.mapEdges2 + radius - x0) / CELL_SIZE));
+        int maxX = Math.min(SIZE - 1, (int)Math.floor((Robot.mapEdges0 - radius - x0) / CELL_SIZE));
+        int minY = Math.max(0, (int)Math.ceil((Robot.mapEdges3 + radius - y0) / CELL_SIZE));
+        int maxY = Math.min(SIZE - 1, (int)Math.floor((Robot.mapEdges1 - radius - y0) / CELL_SIZE));
+        int columns = minX > maxX ? 0 : (maxX == 31 ? -1 : (1 << (maxX + 1)) - 1) & -(1 << minX);
+        for (int y = 0; y < SIZE; y++) {
+            free[y] = y >= minY && y <= maxY ? columns : 0;
+        }
+
+        radius += MARGIN;
+        float range = CENTER * CELL_SIZE;
+        for (TreeInfo tree : Robot.rc.senseNearbyTrees(range)) {
+            block(tree.location.x - x0, tree.location.y - y0, tree.radius + radius);
+        }
+        for (RobotInfo robot : Robot.rc.senseNearbyRobots(range)) {
+            block(robot.location.x - x0, robot.location.y - y0, robot.type.bodyRadius + radius);
+        }
+
+        // The unit is always at its own cell
+        free[CENTER] |= 1 << CENTER;
+    }
+
+    /** Clears the cells with their center strictly inside the circle, given relative to cell 0,0 */
+    private static void block(float cx, float cy, float r) {
+        float rCells = r / CELL_SIZE;
+        float px = cx / CELL_SIZE;
+        float py = cy / CELL_SIZE;
+        int minY = Math.max(0, (int)Math.floor(py - rCells) + 1);
+        int maxY = Math.min(SIZE - 1, (int)Math.ceil(py + rCells) - 1);
+        for (int y = minY; y <= maxY; y++) {
+            float dy = y - py;
+            float half = (float)Math.sqrt(rCells * rCells - dy * dy);
+            int lo = Math.max(0, (int)Math.floor(px - half) + 1);
+            int hi = Math.min(SIZE - 1, (int)Math.ceil(px + half) - 1);
+            if (lo > hi) continue;
+            // Bits lo to hi inclusive
+            int mask = (hi == 31 ? -1 : (1 << (hi + 1)) - 1) & -(1 << lo);
+            free[y] &= ~mask;
+        }
+    }
+
+    /**
+     * Runs waves from the unit until the goal is reached or nothing new is reached.
+     * Returns false if it ran out of bytecodes first.
+     */
+    static boolean expand() {
+        int wave = waveCount;
+        int[] reached = waves[wave];
+        int minY = minRows[wave];
+        int maxY = maxRows[wave];
+        int gx = goalX;
+        int gy = goalY;
+        int[] freeRows = free;
+        boolean done = false;
+        while (Clock.getBytecodesLeft() > RESERVE) {
+            if (wave == MAX_WAVES || (gy >= minY && gy <= maxY && ((reached[gy] >>> gx) & 1) != 0)) {
+                done = true;
+                break;
+            }
+
+            // Only cells within this distance of the goal can still be on a path that is short enough
+            int range = maxLength - wave - 1;
+            int lowY = Math.max(Math.max(0, minY - 1), gy - range);
+            int highY = Math.min(Math.min(SIZE - 1, maxY + 1), gy + range);
+            int columns = (gx + range >= 31 ? -1 : (1 << (gx + range + 1)) - 1) & (gx - range <= 0 ? -1 : -(1 << (gx - range)));
+
+            int[] next = waves[wave + 1];
+            int changed = 0;
+            // The rows just outside the active range are empty
+            int above = 0;
+            if (lowY > minY) {
+                above = reached[lowY - 1];
+                above |= above << 1 | above >>> 1;
+            }
+            int row = reached[lowY];
+            int spreadRow = row | row << 1 | row >>> 1;
+            for (int y = lowY; y <= highY; y++) {
+                int below = reached[y + 1];
+                int spreadBelow = below | below << 1 | below >>> 1;
+                int value = (above | spreadRow | spreadBelow) & freeRows[y] & columns;
+                changed |= value ^ row;
+                next[y] = value;
+                above = spreadRow;
+                row = below;
+                spreadRow = spreadBelow;
+            }
+            // The next wave reads the rows just outside the active range, and two rows below it if it grows
+            if (lowY > 0) next[lowY - 1] = 0;
+            next[highY + 1] = 0;
+            next[highY + 2] = 0;
+
+            wave++;
+            minRows[wave] = minY = lowY;
+            maxRows[wave] = maxY = highY;
+            reached = next;
+            // A search that dropped all its cells fails one wave later
+            if (changed == 0) {
+                if (maxLength == UNLIMITED) {
+                    done = true;
+                    break;
+                }
+                // There is no path of this length, allow a longer detour
+                restartSearch(2 * slack);
+                wave = 0;
+                reached = waves[0];
+                minY = CENTER;
+                maxY = CENTER;
+            }
+        }
+        waveCount = wave;
+        return done;
+    }
+
+    /** The reached cell closest to the goal as y * SIZE + x, or -1 if only the unit's own cell was reached */
+    private static int closestReached() {
+        int[] reached = waves[waveCount];
+        int gx = goalX;
+        int gy = goalY;
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        int maxY = maxRows[waveCount];
+        for (int y = minRows[waveCount]; y <= maxY; y++) {
+            int row = reached[y];
+            if (row == 0) continue;
+
+            // Closest set bit on either side of the goal column
+            int left = row & (gx >= 31 ? -1 : (1 << (gx + 1)) - 1);
+            int right = row & ~((gx >= 31 ? -1 : (1 << (gx + 1)) - 1));
+            int dy = y - gy;
+            if (left != 0) {
+                int x = 31 - Integer.numberOfLeadingZeros(left);
+                int distance = (gx - x) * (gx - x) + dy * dy;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = y * SIZE + x;
+                }
+            }
+            if (right != 0) {
+                int x = Integer.numberOfTrailingZeros(right);
+                int distance = (x - gx) * (x - gx) + dy * dy;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = y * SIZE + x;
+                }
+            }
+        }
+        return best == CENTER * SIZE + CENTER ? -1 : best;
+    }
+
+    /** A neighbour of the cell that was reached in the given wave, the one towards the unit if possible */
+    private static int previousCell(int wave, int x, int y) {
+        // Paths of the same length zigzag less this way
+        int towardsX = x + Integer.signum(CENTER - x);
+        int towardsY = y + Integer.signum(CENTER - y);
+        if (isReached(wave, towardsX, towardsY)) return towardsY * SIZE + towardsX;
+
+        int[] reached = waves[wave];
+        int columns = x == 0 ? 3 : 7 << (x - 1);
+        int maxY = Math.min(maxRows[wave], y + 1);
+        for (int ny = Math.max(minRows[wave], y - 1); ny <= maxY; ny++) {
+            int neighbours = reached[ny] & columns;
+            if (neighbours != 0) return ny * SIZE + Integer.numberOfTrailingZeros(neighbours);
+        }
+        return y * SIZE + x;
+    }
+}
@@ -0,0 +1,204 @@
+package bot;
+
+import battlecode.common.*;
+
+/**
+ * Intervals that the map edges are known to lie in, shared by all robots.
+ * <p>
+ * Edges are numbered like Robot.mapEdges0-3. Each one is stored as its distance outwards, that is the coordinate
+ * for edges 0 and 1 and minus the coordinate for edges 2 and 3, so that every edge lies between its inner and
+ * outer bound. The inner bounds come from locations known to be on the map: the robots' own positions, the initial
+ * archons and points probed with onTheMap. The outer bounds come from points probed off the map.
+ * Both are narrowed further by the minimum and maximum map width, and by the symmetry of the map, under which
+ * the two edges along a mirrored axis are the same distance from the center.
+ * <p>
+ * A robot only probes an edge if part of its interval is within sensor range, and then bisects only what is left
+ * of that interval. An edge is determined once its interval is narrower than {@link #TOLERANCE}, and
+ * Robot.mapEdges0-3 hold the inner bound of determined edges and the outer bound of the others.
+ * As long as nothing new is broadcast and the robot stays in the area where no undetermined edge is in range,
+ * an update only costs a few comparisons.
+ */
+class MapBounds {
+    static final float TOLERANCE = 0.002f;
+    /** Set in the determined edges word once the inner bounds have been broadcast */
+    static final int INNER_BOUNDS_SHARED = 1 << 4;
+    /** The rest of the determined edges word counts the broadcasts, so that unchanged bounds are not read again */
+    private static final int VERSION = 1 << 5;
+
+    private static final int OUTER_BOUNDS = Robot.MAP_EDGE_BROADCAST_OFFSET + 1;
+    private static final int INNER_BOUNDS = Robot.MAP_EDGE_BROADCAST_OFFSET + 5;
+    /** Map coordinates are never negative, and the map starts at most this far from the origin */
+    private static final float MAX_MAP_OFFSET = 500f;
+
+    static final float[] inner = new float[4];
+    static final float[] outer = new float[4];
+    /** The determined edges word at the last read or broadcast */
+    private static int lastWord = 0;
+    /** Distance at which edges are probed */
+    private static float range;
+    /** Area in which the robot can not learn anything new */
+    private static float quietMinX, quietMinY, quietMaxX, quietMaxY;
+
+    static void init(MapLocation spawn, MapLocation[] ours, MapLocation[] theirs) {
+        range = Robot.type.sensorRadius * 0.99f;
+        outer[0] = outer[1] = MAX_MAP_OFFSET + GameConstants.MAP_MAX_WIDTH;
+        outer[2] = outer[3] = 0;
+        inner[0] = inner[1] = inner[2] = inner[3] = -Float.MAX_VALUE;
+        lastWord = 0;
+
+        contain(spawn, Robot.type.bodyRadius);
+        for (MapLocation loc : ours) contain(loc, RobotType.ARCHON.bodyRadius);
+        for (MapLocation loc : theirs) contain(loc, RobotType.ARCHON.bodyRadius);
+        tighten();
+        copyToRobot();
+    }
+
+    /** Narrows the intervals with what the robot can see from its location and with what other robots broadcast */
+    static void update(MapLocation loc) throws GameActionException {
+        boolean changed = read();
+        if (!changed && loc.x <= quietMaxX && loc.y <= quietMaxY && loc.x >= quietMinX && loc.y >= quietMinY) return;
+
+        contain(loc, Robot.type.bodyRadius);
+        tighten();
+        boolean probed = false;
+        for (int i = 0; i < 4; i++) {
+            if (probe(i, loc, range)) probed = true;
+        }
+        if (probed) {
+            tighten();
+            broadcast();
+        }
+
+        int previous = Robot.mapEdgesDetermined;
+        copyToRobot();
+        for (int i = 0; i < 4; i++) {
+            if ((Robot.mapEdgesDetermined & ~previous & (1 << i)) != 0) {
+                System.out.println("Found map edge " + i + " at " + (i < 2 ? inner[i] : -inner[i]));
+            }
+        }
+    }
+
+    /** Widens the inner bounds to include the circle, which must be on the map */
+    private static void contain(MapLocation loc, float radius) {
+        inner[0] = Math.max(inner[0], loc.x + radius);
+        inner[1] = Math.max(inner[1], loc.y + radius);
+        inner[2] = Math.max(inner[2], radius - loc.x);
+        inner[3] = Math.max(inner[3], radius - loc.y);
+    }
+
+    /** Narrows the intervals of opposite edges using each other */
+    private static void tighten() {
+        for (int a = 0; a < 2; a++) {
+            int b = a + 2;
+            if (Symmetry.mirrorsEdge(a)) {
+                // Both edges are the same distance d from the center, and the width 2d is within the limits
+                float c = a == 0 ? Symmetry.center.x : Symmetry.center.y;
+                float min = Math.max(GameConstants.MAP_MIN_WIDTH * 0.5f, Math.max(inner[a] - c, inner[b] + c));
+                float max = Math.min(GameConstants.MAP_MAX_WIDTH * 0.5f, Math.min(outer[a] - c, outer[b] + c));
+                inner[a] = min + c;
+                inner[b] = min - c;
+                outer[a] = max + c;
+                outer[b] = max - c;
+            } else {
+                // The width is the sum of the distances
+                outer[a] = Math.min(outer[a], GameConstants.MAP_MAX_WIDTH - inner[b]);
+                outer[b] = Math.min(outer[b], GameConstants.MAP_MAX_WIDTH - inner[a]);
+                inner[a] = Math.max(inner[a], GameConstants.MAP_MIN_WIDTH - outer[b]);
+                inner[b] = Math.max(inner[b], GameConstants.MAP_MIN_WIDTH - outer[a]);
+            }
+        }
+    }
+
+    /** Bit set of the edges whose interval is narrow enough */
+    static int determined() {
+        int result = 0;
+        for (int i = 0; i < 4; i++) {
+            if (outer[i] - inner[i] <= TOLERANCE) result |= 1 << i;
+        }
+        return result;
+    }
+
+    /** Narrows the intervals with the ones broadcast by other robots. Returns false if nothing was broadcast since the last time. */
+    private static boolean read() throws GameActionException {
+        int word = Robot.rc.readBroadcast(Robot.MAP_EDGE_BROADCAST_OFFSET);
+        if (word == lastWord) return false;
+
+        lastWord = word;
+        boolean innerShared = (word & INNER_BOUNDS_SHARED) != 0;
+        for (int i = 0; i < 4; i++) {
+            float sign = i < 2 ? 1 : -1;
+            outer[i] = Math.min(outer[i], sign * Robot.rc.readBroadcastFloat(OUTER_BOUNDS + i));
+            if (innerShared) inner[i] = Math.max(inner[i], sign * Robot.rc.readBroadcastFloat(INNER_BOUNDS + i));
+        }
+        return true;
+    }
+
+    /** Broadcasts the intervals for the other robots */
+    static void broadcast() throws GameActionException {
+        int determined = determined();
+        for (int i = 0; i < 4; i++) {
+            float sign = i < 2 ? 1 : -1;
+            Robot.rc.broadcastFloat(OUTER_BOUNDS + i, sign * ((determined & (1 << i)) != 0 ? inner[i] : outer[i]));
+            Robot.rc.broadcastFloat(INNER_BOUNDS + i, sign * inner[i]);
+        }
+        lastWord = (Robot.rc.readBroadcast(Robot.MAP_EDGE_BROADCAST_OFFSET) & -VERSION) + VERSION | INNER_BOUNDS_SHARED | determined;
+        Robot.rc.broadcast(Robot.MAP_EDGE_BROADCAST_OFFSET, lastWord);
+    }
+
+    /** Copies the intervals to Robot.mapEdges0-3 and Robot.mapEdgesDetermined, and updates the quiet area */
+    private static void copyToRobot() {
+        int determined = determined();
+        Robot.mapEdgesDetermined = determined;
+        Robot.mapEdges0 = (determined & 1) != 0 ? inner[0] : outer[0];
+        Robot.mapEdges1 = (determined & 2) != 0 ? inner[1] : outer[1];
+        Robot.mapEdges2 = -((determined & 4) != 0 ? inner[2] : outer[2]);
+        Robot.mapEdges3 = -((determined & 8) != 0 ? inner[3] : outer[3]);
+
+        // The robot's own location can only widen the inner bounds where it would also see beyond them
+        quietMaxX = (determined & 1) != 0 ? Float.MAX_VALUE : inner[0] - range;
+        quietMaxY = (determined & 2) != 0 ? Float.MAX_VALUE : inner[1] - range;
+        quietMinX = (determined & 4) != 0 ? -Float.MAX_VALUE : range - inner[2];
+        quietMinY = (determined & 8) != 0 ? -Float.MAX_VALUE : range - inner[3];
+    }
+
+    /**
+     * Probes the part of the edge's interval within the given distance of the location, which must be on the map.
+     * Returns true if the interval changed.
+     */
+    static boolean probe(int edge, MapLocation loc, float range) throws GameActionException {
+        float position = edge == 0 ? loc.x : edge == 1 ? loc.y : edge == 2 ? -loc.x : -loc.y;
+        float lo = inner[edge];
+        float hi = outer[edge];
+        if (hi - lo <= TOLERANCE) return false;
+
+        // Nothing can be learned if the whole interval is out of range
+        float reach = position + range;
+        if (reach <= lo) return false;
+
+        float angle = edge * (float)Math.PI / 2f;
+        if (reach < hi) {
+            if (Robot.rc.onTheMap(loc.add(angle, range))) {
+                inner[edge] = reach;
+                return true;
+            }
+            hi = reach;
+        } else if (Robot.rc.onTheMap(loc.add(angle, hi - position))) {
+            // The edge is exactly at its outer bound, which happens when the map touches the origin
+            inner[edge] = hi;
+            return true;
+        }
+
+        // The number of probes only depends on how much of the interval is left
+        while (hi - lo > TOLERANCE) {
+            float mid = (lo + hi) * 0.5f;
+            if (Robot.rc.onTheMap(loc.add(angle, mid - position))) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        inner[edge] = lo;
+        outer[edge] = hi;
+        return true;
+    }
+}
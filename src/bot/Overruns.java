@@ -0,0 +1,72 @@
+package bot;
+
+import battlecode.common.*;
+
+/**
+ * Records turns in which a robot ran out of bytecodes.
+ * <p>
+ * The expensive parts of a turn are wrapped in {@link #begin(int)} and {@link #end()}.
+ * If the round changed while a subsystem was running the overrun is attributed to that subsystem,
+ * otherwise it is attributed to "other" when the turn ends.
+ * <p>
+ * Each overrun increments the team's counter at OVERRUN_COUNTERS + type.ordinal() * SUBSYSTEMS + subsystem
+ * and prints a line that the run script can parse:
+ * <pre>
+ * OVERRUN team type id round subsystem
+ * </pre>
+ * where round is the round in which the turn started.
+ */
+class Overruns {
+    static final int OTHER = 0;
+    static final int MOVE_TO_AVOID_BULLETS = 1;
+    static final int FIRE_AT_NEARBY_ROBOT = 2;
+    static final int HIRE_GARDENER = 3;
+    static final int DETERMINE_MAP_SIZE = 4;
+    static final int SHAKE_NEARBY_TREES = 5;
+    static final int BROADCAST_EXPLORATION = 6;
+    static final int BROADCAST_ENEMY_LOCATIONS = 7;
+    static final int SUBSYSTEMS = 8;
+
+    private static final String[] names = {
+            "other",
+            "moveToAvoidBullets",
+            "fireAtNearbyRobot",
+            "tryHireGardener",
+            "determineMapSize",
+            "shakeNearbyTrees",
+            "broadcastExploration",
+            "broadcastEnemyLocations",
+    };
+
+    private static int current = OTHER;
+    private static int currentStartRound;
+    private static boolean recordedThisTurn = false;
+
+    static void begin(int subsystem) {
+        current = subsystem;
+        currentStartRound = Robot.rc.getRoundNum();
+    }
+
+    static void end() throws GameActionException {
+        if (Robot.rc.getRoundNum() != currentStartRound) record(current);
+        current = OTHER;
+    }
+
+    /**
+     * Must be called at the end of every turn, right before yielding
+     */
+    static void endOfTurn() throws GameActionException {
+        if (Robot.rc.getRoundNum() != Robot.roundAtStart) record(OTHER);
+        recordedThisTurn = false;
+    }
+
+    private static void record(int subsystem) throws GameActionException {
+        // Only record the first overrun in each turn
+        if (recordedThisTurn) return;
+        recordedThisTurn = true;
+
+        int channel = Robot.OVERRUN_COUNTERS + Robot.type.ordinal() * SUBSYSTEMS + subsystem;
+        Robot.rc.broadcast(channel, Robot.rc.readBroadcast(channel) + 1);
+        System.out.println("OVERRUN " + Robot.ally + " " + Robot.type + " " + Robot.rc.getID() + " " + Robot.roundAtStart + " " + names[subsystem]);
+    }
+}
@@ -0,0 +1,149 @@
+package bot;
+
+import battlecode.common.*;
+
+/**
+ * Bytecode profiler with named sections.
+ * <p>
+ * Sections are registered once using {@link #register(String)} and measured by wrapping code
+ * in {@link #begin(int)} and {@link #end()}. Sections may be nested, in which case the outer
+ * section includes the time spent in the inner one.
+ * <p>
+ * Time is measured on a clock that keeps running across rounds so that a section which is interrupted
+ * by running out of bytecodes is still charged for all the bytecodes it used.
+ * Time spent waiting in Clock.yield is not counted.
+ * <p>
+ * The profiler is disabled unless the bc.testing.profile property is set to the number of rounds between reports.
+ * Each report is a single line that the run script can parse:
+ * <pre>
+ * PROFILE team type id firstRound lastRound section:calls:bytecodes:worstRound ...
+ * </pre>
+ * where worstRound is the largest number of bytecodes spent in that section during a single round.
+ */
+class Profiler {
+    static final int MAX_SECTIONS = 32;
+    private static final int MAX_DEPTH = 16;
+
+    static final int reportInterval = Integer.parseInt(System.getProperty("bc.testing.profile", "0"));
+    static final boolean enabled = reportInterval > 0;
+
+    private static final String[] names = new String[MAX_SECTIONS];
+    private static int sectionCount = 0;
+
+    private static final int[] calls = new int[MAX_SECTIONS];
+    private static final long[] bytecodes = new long[MAX_SECTIONS];
+    private static final int[] bytecodesThisRound = new int[MAX_SECTIONS];
+    private static final int[] worstRound = new int[MAX_SECTIONS];
+    private static int currentRound = -1;
+    private static int reportStartRound = -1;
+
+    private static final int[] openSections = new int[MAX_DEPTH];
+    private static final long[] openTimes = new long[MAX_DEPTH];
+    private static int depth = 0;
+
+    private static long clockBase = 0;
+    private static int clockRound = -1;
+
+    /**
+     * Registers a new section.
+     * Should be called once per section, typically when initializing a static final field.
+     *
+     * @return Identifier to pass to {@link #begin(int)}
+     */
+    static int register(String name) {
+        if (sectionCount == MAX_SECTIONS) throw new IllegalStateException("Too many profiler sections");
+        names[sectionCount] = name;
+        return sectionCount++;
+    }
+
+    /**
+     * Total number of bytecodes that this robot has used since the profiler was first used.
+     * Rounds which ended without a call to {@link #beforeYield()} must have been cut short by the engine,
+     * which only happens when all bytecodes for that round were used.
+     */
+    private static long now() {
+        int round = Robot.rc.getRoundNum();
+        if (round != clockRound) {
+            if (clockRound != -1) clockBase += (long)(round - clockRound) * Robot.type.bytecodeLimit;
+            clockRound = round;
+        }
+        return clockBase + Clock.getBytecodeNum();
+    }
+
+    static void begin(int section) {
+        if (!enabled) return;
+
+        if (depth < MAX_DEPTH) {
+            openSections[depth] = section;
+            openTimes[depth] = now();
+        }
+        depth++;
+    }
+
+    static void end() {
+        if (!enabled) return;
+
+        depth--;
+        if (depth >= MAX_DEPTH || depth < 0) {
+            depth = Math.max(depth, 0);
+            return;
+        }
+
+        long time = now();
+        int section = openSections[depth];
+        int used = (int)(time - openTimes[depth]);
+
+        if (clockRound != currentRound) {
+            for (int i = 0; i < sectionCount; i++) {
+                worstRound[i] = Math.max(worstRound[i], bytecodesThisRound[i]);
+                bytecodesThisRound[i] = 0;
+            }
+            currentRound = clockRound;
+        }
+
+        calls[section]++;
+        bytecodes[section] += used;
+        bytecodesThisRound[section] += used;
+    }
+
+    /**
+     * Discards all open sections.
+     * Used when an exception has propagated out of a section without it being ended.
+     */
+    static void clearOpenSections() {
+        depth = 0;
+    }
+
+    /**
+     * Must be called right before Clock.yield so that the time spent waiting for the next round is not counted.
+     * Prints a report if enough rounds have passed since the last one.
+     */
+    static void beforeYield() {
+        if (!enabled) return;
+
+        clockBase = now();
+        clockRound = Robot.rc.getRoundNum() + 1;
+
+        if (reportStartRound == -1) reportStartRound = Robot.rc.getRoundNum();
+        if (Robot.rc.getRoundNum() - reportStartRound + 1 >= reportInterval) {
+            report();
+            reportStartRound = Robot.rc.getRoundNum() + 1;
+        }
+    }
+
+    private static void report() {
+        StringBuilder builder = new StringBuilder("PROFILE ");
+        builder.append(Robot.ally).append(' ').append(Robot.type).append(' ').append(Robot.rc.getID()).append(' ');
+        builder.append(reportStartRound).append(' ').append(Robot.rc.getRoundNum());
+        for (int i = 0; i < sectionCount; i++) {
+            if (calls[i] == 0) continue;
+
+            builder.append(' ').append(names[i]).append(':').append(calls[i]).append(':').append(bytecodes[i]).append(':').append(Math.max(worstRound[i], bytecodesThisRound[i]));
+            calls[i] = 0;
+            bytecodes[i] = 0;
+            worstRound[i] = 0;
+            bytecodesThisRound[i] = 0;
+        }
+        System.out.println(builder.toString());
+    }
+}
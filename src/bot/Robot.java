@@ -28,13 +28,63 @@ abstract class Robot {
     static final int NUMBER_OF_TARGETS = 4;
     static final int ARCHON_COUNT = 2900;
     static final int ARCHON_LOCATIONS = 2901;
+    /** Robot scanning each chunk and the round it claimed it in, see broadcastExploration */
+    static final int PATHFINDING_CLAIMS = 1000;
+    /** Danger of each chunk from recent enemy sightings, see dangerLevel */
+    static final int PATHFINDING_DANGER = 2000;
     static final int RANDOM_LAST = 2997;
     static final int PATHFINDING = 3000;
+    /** Set in a chunk word that was mirrored from its twin chunk instead of being explored, see Symmetry */
+    static final int CHUNK_INFERRED = 1 << 30;
+    /** Number of chunk changes ever logged, see logChunkChange */
+    static final int PATHFINDING_CHANGE_COUNT = 3700;
+    /** Ring buffer with the indices of the most recently changed chunks */
+    static final int PATHFINDING_CHANGE_LOG = 3701;
+    static final int PATHFINDING_CHANGE_LOG_SIZE = 256;
     static final int PATHFINDING_RESULT_TO_ENEMY_ARCHON = 4000;
+    /** Diagonal bit of each node in the field to the enemy archons, 16 bits per chunk, see nextPointOnPath */
+    static final int PATHFINDING_RESULT_DIAGONALS = 4625;
     static final int PATHFINDING_TREE = 5000;
     static final int HIGH_PRIORITY = 6000;
     static final int ARCHON_BUILD_SCORE = 7001;
     static final int ENEMIES_SPOTTED = 7100;
+    /** Round in which each flow field was last refreshed, see FlowFields */
+    static final int PATHFINDING_FIELD_ROUNDS = 7150;
+    /** Overrun counters for each robot type and subsystem, see Overruns */
+    static final int OVERRUN_COUNTERS = 7200;
+    static final int PATHFINDING_RESULT_TO_OUR_ARCHONS = 7300;
+    static final int PATHFINDING_RESULT_TO_HOT_TARGET = 8000;
+    static final int PATHFINDING_RESULT_TO_FRONTIER = 8700;
+    /** Scan stamps of the four quadrants of each chunk, see AGE_ROUNDS */
+    static final int PATHFINDING_AGES = 9350;
+
+    static final int PROFILE_MOVE_TO_AVOID_BULLETS = Profiler.register("moveToAvoidBullets");
+    static final int PROFILE_PICK_FIRE_TARGET = Profiler.register("fireAtNearbyRobot");
+    static final int PROFILE_DETERMINE_MAP_SIZE = Profiler.register("determineMapSize");
+    static final int PROFILE_SHAKE_NEARBY_TREES = Profiler.register("shakeNearbyTrees");
+    static final int PROFILE_BROADCAST_EXPLORATION = Profiler.register("broadcastExploration");
+    static final int PROFILE_DO_CHUNK_JOB = Profiler.register("doChunkJob");
+    static final int PROFILE_BROADCAST_ENEMY_LOCATIONS = Profiler.register("broadcastEnemyLocations");
+
+    /**
+     * Each chunk has an age word with one byte per 2x2 quadrant of its nodes, quadrant 0 being nodes 0, 1, 4 and 5
+     * and quadrant 1 nodes 2, 3, 6 and 7. A byte holds round / AGE_ROUNDS + 1 of the last scan that covered the whole
+     * quadrant, or 0 if it was never scanned. The stamps do not wrap around within a game.
+     */
+    static final int AGE_ROUNDS = 16;
+    /** Rounds after which the nodes of a quadrant are scanned again */
+    static final int STALE_ROUNDS = 100;
+    /** Nodes of each quadrant, as a mask with the same bits as a chunk word */
+    static final int[] QUADRANT_NODES = {0x0033, 0x00CC, 0x3300, 0xCC00};
+
+    /** Danger levels are capped at this, they are stored in the low bits of a danger word */
+    static final int MAX_DANGER = 15;
+    /** A danger level decays by one every this many rounds */
+    static final int DANGER_DECAY_ROUNDS = 20;
+    /** Chunks with enemies seen in the current call to broadcastEnemyLocations and the danger they add */
+    private static final int[] sightedChunks = new int[8];
+    private static final int[] sightedDanger = new int[8];
+    private static int sightedCount = 0;
 
     static final int[] dx = new int[]{1, 0, -1, 0};
     static final int[] dy = new int[]{0, 1, 0, -1};
@@ -49,6 +99,9 @@ abstract class Robot {
 
     static final int STOP_SPENDING_AT_TIME = 50;
 
+    /** Round at which all robots print a snapshot of what they can see, see debug_printSnapshot */
+    static final int SNAPSHOT_ROUND = Integer.parseInt(System.getProperty("bc.testing.snapshot", "-1"));
+
     static int mapEdgesDetermined = 0;
     static float mapEdges0, mapEdges1, mapEdges2, mapEdges3;
     static boolean countingAsAlive = true;
@@ -64,17 +117,18 @@ abstract class Robot {
         type = rc.getType();
         spawnPos = rc.getLocation();
 
-        // Conservative map edges
-        mapEdges0 = Math.min(spawnPos.x, 500f) + GameConstants.MAP_MAX_WIDTH;
-        mapEdges1 = Math.min(spawnPos.y, 500f) + GameConstants.MAP_MAX_WIDTH;
-        mapEdges2 = Math.max(spawnPos.x - GameConstants.MAP_MAX_WIDTH, 0f);
-        mapEdges3 = Math.max(spawnPos.y - GameConstants.MAP_MAX_WIDTH, 0f);
-
         ally = rc.getTeam();
         enemy = ally.opponent();
         ourInitialArchonLocations = rc.getInitialArchonLocations(ally);
         initialArchonLocations = rc.getInitialArchonLocations(enemy);
 
+        // Conservative map edges, narrowed by the symmetry of the map
+        Symmetry.init(ourInitialArchonLocations, initialArchonLocations);
+        MapBounds.init(spawnPos, ourInitialArchonLocations, initialArchonLocations);
+
+        // Exploration jobs are relative to the exploration origin
+        jobChunkCenter = null;
+
         // Set the exploration origin if it has not been set already
         if (readBroadcastLong(EXPLORATION_ORIGIN) == 0L) {
             onStartOfGame();
@@ -89,13 +143,14 @@ abstract class Robot {
      * Called once at the start of the game (only for a single unit).
      */
     static void onStartOfGame() throws GameActionException {
-        explorationOrigin = rc.getLocation().translate(-PATHFINDING_NODE_SIZE * PATHFINDING_WORLD_WIDTH / 2, -PATHFINDING_NODE_SIZE * PATHFINDING_WORLD_WIDTH / 2);
+        // Chunks can only be mirrored if the center of the map is on a chunk corner
+        explorationOrigin = Symmetry.explorationOrigin();
+        if (explorationOrigin == null) {
+            explorationOrigin = rc.getLocation().translate(-PATHFINDING_NODE_SIZE * PATHFINDING_WORLD_WIDTH / 2, -PATHFINDING_NODE_SIZE * PATHFINDING_WORLD_WIDTH / 2);
+        }
         broadcast(EXPLORATION_ORIGIN, explorationOrigin);
 
-        rc.broadcastFloat(MAP_EDGE_BROADCAST_OFFSET + (0 + 1), mapEdges0);
-        rc.broadcastFloat(MAP_EDGE_BROADCAST_OFFSET + (1 + 1), mapEdges1);
-        rc.broadcastFloat(MAP_EDGE_BROADCAST_OFFSET + (2 + 1), mapEdges2);
-        rc.broadcastFloat(MAP_EDGE_BROADCAST_OFFSET + (3 + 1), mapEdges3);
+        MapBounds.broadcast();
 
         // Reset some broadcast values
         rc.broadcast(GARDENER_OFFSET, -1000);
@@ -239,20 +294,50 @@ abstract class Robot {
 
     static void yieldAndDoBackgroundTasks() throws GameActionException {
         updateLiveness();
-        if (Clock.getBytecodesLeft() > 1000) determineMapSize();
-        if (Clock.getBytecodesLeft() > 1000 || rc.getType() == RobotType.GARDENER) shakeNearbyTrees();
-        if (Clock.getBytecodesLeft() > 200) broadcastExploration();
-        if (Clock.getBytecodesLeft() > 1000) broadcastEnemyLocations();
+        BackgroundTasks.run();
 
-        if (rc.getRoundNum() != roundAtStart) {
-            System.out.println("Error! Did not finish within the bytecode limit");
-        }
+        Overruns.endOfTurn();
 
+        if (rc.getRoundNum() == SNAPSHOT_ROUND) debug_printSnapshot();
+
+        Profiler.beforeYield();
         Clock.yield();
         onStartOfTick();
     }
 
     static MapLocation nextPointOnPathToEnemyArchon(MapLocation loc) throws GameActionException {
+        return nextPointOnPath(PATHFINDING_RESULT_TO_ENEMY_ARCHON, PATHFINDING_RESULT_DIAGONALS, loc);
+    }
+
+    /** Next point on the path to the closest of our initial archon locations, or null if that field is not maintained */
+    static MapLocation nextPointOnPathToOurArchons(MapLocation loc) throws GameActionException {
+        return nextPointOnField(FlowFields.OUR_ARCHONS, loc);
+    }
+
+    /** Next point on the path to the target with the highest priority, or null if that field is not maintained */
+    static MapLocation nextPointOnPathToHotTarget(MapLocation loc) throws GameActionException {
+        return nextPointOnField(FlowFields.HOT_TARGET, loc);
+    }
+
+    /** Next point on the path to the closest chunk that has not been fully explored, or null if that field is not maintained */
+    static MapLocation nextPointOnPathToFrontier(MapLocation loc) throws GameActionException {
+        return nextPointOnField(FlowFields.FRONTIER, loc);
+    }
+
+    static MapLocation nextPointOnField(int field, MapLocation loc) throws GameActionException {
+        int refreshed = rc.readBroadcast(PATHFINDING_FIELD_ROUNDS + field);
+        if (refreshed <= 0 || rc.getRoundNum() - refreshed > FlowFields.expiry[field]) return null;
+
+        return nextPointOnPath(FlowFields.channels[field], FlowFields.diagonalChannels[field], loc);
+    }
+
+    /**
+     * Next point on the path stored in the flow field starting at the given channel.
+     * Each node has 2 bits with the direction it was reached from. If the field has diagonal bits
+     * (diagonals is -1 if it does not) and the bit of the node is set, the step is turned into a diagonal one
+     * by also moving one node counterclockwise.
+     */
+    static MapLocation nextPointOnPath(int channel, int diagonals, MapLocation loc) throws GameActionException {
         MapLocation relativePos = loc.translate(-explorationOrigin.x, -explorationOrigin.y);
         int nx = (int)Math.floor(relativePos.x / PATHFINDING_NODE_SIZE);
         int ny = (int)Math.floor(relativePos.y / PATHFINDING_NODE_SIZE);
@@ -266,13 +351,19 @@ abstract class Robot {
         int cy = ny / 4;
 
         int chunkIndex = cy * (PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE) + cx;
-        int dir = (rc.readBroadcast(PATHFINDING_RESULT_TO_ENEMY_ARCHON + chunkIndex) >> 2 * ((ny % 4) * PATHFINDING_CHUNK_SIZE + (nx % 4))) & 0x3;
+        int bit = (ny % 4) * PATHFINDING_CHUNK_SIZE + (nx % 4);
+        int dir = (rc.readBroadcast(channel + chunkIndex) >> 2 * bit) & 0x3;
 
-        // Direction needs to be reversed to move toward the archon
+        // Direction needs to be reversed to move toward the seeds
         dir = (dir + 2) % 4;
 
         int tx = nx + dx[dir];
         int ty = ny + dy[dir];
+        if (diagonals >= 0 && ((rc.readBroadcast(diagonals + (chunkIndex >> 1)) >> (((chunkIndex & 1) << 4) + bit)) & 1) != 0) {
+            int side = (dir + 1) % 4;
+            tx += dx[side];
+            ty += dy[side];
+        }
         return explorationOrigin.translate((tx + 0.5f) * PATHFINDING_NODE_SIZE, (ty + 0.5f) * PATHFINDING_NODE_SIZE);
     }
 
@@ -295,8 +386,58 @@ abstract class Robot {
         int cy = y / PATHFINDING_CHUNK_SIZE;
         int index = cy * (PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE) + cx;
         int val = rc.readBroadcast(PATHFINDING_TREE + index);
+        int bit = 1 << ((y % PATHFINDING_CHUNK_SIZE) * PATHFINDING_CHUNK_SIZE + (x % PATHFINDING_CHUNK_SIZE));
         rc.setIndicatorDot(nodePosition(x, y), 0, 0, 255);
-        rc.broadcast(PATHFINDING_TREE + index, val | 1 << ((y % PATHFINDING_CHUNK_SIZE) * PATHFINDING_CHUNK_SIZE + (x % PATHFINDING_CHUNK_SIZE)));
+        rc.broadcast(PATHFINDING_TREE + index, val | bit);
+
+        // Reserved nodes are more expensive to path through
+        if ((val & bit) == 0) logChunkChange(index);
+    }
+
+    /**
+     * Danger level of a chunk in the given round from its word in PATHFINDING_DANGER.
+     * The word holds the round of the last sighting above the level at that time.
+     */
+    static int dangerLevel(int word, int round) {
+        int level = (word & MAX_DANGER) - (round - (word >>> 4)) / DANGER_DECAY_ROUNDS;
+        return level > 0 ? level : 0;
+    }
+
+    /** Adds the danger of an enemy to its chunk, it is broadcast by broadcastDanger */
+    static void addDanger(MapLocation loc, int danger) {
+        int node = snapToNode(loc);
+        if (node < 0 || node >= PATHFINDING_WORLD_WIDTH * PATHFINDING_WORLD_WIDTH) return;
+        int chunk = (node / PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE) * (PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE) + (node % PATHFINDING_WORLD_WIDTH) / PATHFINDING_CHUNK_SIZE;
+
+        for (int i = 0; i < sightedCount; i++) {
+            if (sightedChunks[i] == chunk) {
+                sightedDanger[i] += danger;
+                return;
+            }
+        }
+        if (sightedCount == sightedChunks.length) return;
+        sightedChunks[sightedCount] = chunk;
+        sightedDanger[sightedCount++] = danger;
+    }
+
+    /**
+     * Raises the danger of the chunks where enemies were seen to what this robot saw, unless it is already higher.
+     * Several robots seeing the same enemies do not add up. Only increases are logged as chunk changes,
+     * the archons notice the decay themselves (see Archon.checkDangerDecay).
+     */
+    static void broadcastDanger() throws GameActionException {
+        int round = rc.getRoundNum();
+        for (int i = 0; i < sightedCount; i++) {
+            int chunk = sightedChunks[i];
+            int level = dangerLevel(rc.readBroadcast(PATHFINDING_DANGER + chunk), round);
+            int seen = Math.min(sightedDanger[i], MAX_DANGER);
+            if (seen >= level) {
+                // Restarts the decay
+                rc.broadcast(PATHFINDING_DANGER + chunk, round << 4 | seen);
+                if (seen > level) logChunkChange(chunk);
+            }
+        }
+        sightedCount = 0;
     }
 
     /**
@@ -323,8 +464,49 @@ abstract class Robot {
         return explorationOrigin.translate((x + 0.5f) * PATHFINDING_NODE_SIZE, (y + 0.5f) * PATHFINDING_NODE_SIZE);
     }
 
+    /** Nodes of a chunk in quadrants that were scanned less than STALE_ROUNDS ago, from its age word */
+    static int freshNodes(int ages, int round) {
+        if (ages == 0) return 0;
+
+        int fresh = 0;
+        for (int q = 0; q < 4; q++) {
+            int stamp = (ages >>> (8 * q)) & 0xFF;
+            if (stamp != 0 && round - (stamp - 1) * AGE_ROUNDS < STALE_ROUNDS) fresh |= QUADRANT_NODES[q];
+        }
+        return fresh;
+    }
+
+    /** Number of times STALE_ROUNDS have passed since the oldest quadrant of a chunk was scanned, at most 15 */
+    static int chunkAge(int ages, int round) {
+        int oldest = Integer.MAX_VALUE;
+        for (int q = 0; q < 4; q++) {
+            int stamp = (ages >>> (8 * q)) & 0xFF;
+            if (stamp == 0) return 15;
+            oldest = Math.min(oldest, stamp);
+        }
+        return Math.min(15, (round - (oldest - 1) * AGE_ROUNDS) / STALE_ROUNDS);
+    }
+
+    /** Nodes of the quadrants that are completely in the mask */
+    static int coveredQuadrants(int nodes) {
+        // Both nodes of each pair of columns, then both rows of each pair of rows, leaving one bit per quadrant
+        int pairs = nodes & (nodes >>> 1) & 0x5555;
+        int quadrants = pairs & (pairs >>> PATHFINDING_CHUNK_SIZE) & 0x0505;
+        return quadrants * 0x33;
+    }
+
+    /** The age word with the quadrants in the mask (see coveredQuadrants) stamped with the given round */
+    static int stampQuadrants(int ages, int covered, int round) {
+        // The first node of each quadrant selects its byte
+        int bytes = (covered & 1) * 0xFF | (covered >>> 2 & 1) * 0xFF00 | (covered >>> 8 & 1) * 0xFF0000 | (covered >>> 10 & 1) * 0xFF000000;
+        return (ages & ~bytes) | ((round / AGE_ROUNDS + 1) * 0x01010101 & bytes);
+    }
+
     static void broadcastExploration() throws GameActionException {
-        if (!doChunkJob()) return;
+        Profiler.begin(PROFILE_DO_CHUNK_JOB);
+        boolean chunkJobDone = doChunkJob();
+        Profiler.end();
+        if (!chunkJobDone) return;
 
         // Determine chunk
         MapLocation relativePos = rc.getLocation().translate(-explorationOrigin.x, -explorationOrigin.y);
@@ -335,65 +517,92 @@ abstract class Robot {
             return;
         }
 
-        cx /= PATHFINDING_CHUNK_SIZE;
-        cy /= PATHFINDING_CHUNK_SIZE;
-
-        int recalculationTime = (rc.getRoundNum() / 100) & 0xF;
+        int round = rc.getRoundNum();
+        int claim = round << 15 | (rc.getID() & 0x7FFF);
 
-        float totalWeight = 0f;
+        // Every chunk that overlaps the sensor range
+        int range = (int)Math.ceil(type.sensorRadius / PATHFINDING_NODE_SIZE);
+        int minX = Math.max(0, cx - range) / PATHFINDING_CHUNK_SIZE;
+        int maxX = Math.min(PATHFINDING_WORLD_WIDTH - 1, cx + range) / PATHFINDING_CHUNK_SIZE;
+        int minY = Math.max(0, cy - range) / PATHFINDING_CHUNK_SIZE;
+        int maxY = Math.min(PATHFINDING_WORLD_WIDTH - 1, cy + range) / PATHFINDING_CHUNK_SIZE;
 
-        for (int dy = -1; dy <= 1; dy++) {
-            int ny = cy + dy;
-            for (int dx = -1; dx <= 1; dx++) {
+        float bestValue = 0;
+        int bestIndex = -1;
+        MapLocation bestCenter = null;
+        for (int ny = minY; ny <= maxY; ny++) {
+            for (int nx = minX; nx <= maxX; nx++) {
                 if (Clock.getBytecodesLeft() < 800) break;
 
-                int nx = cx + dx;
                 int index = ny * (PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE) + nx;
                 int chunkInfo = rc.readBroadcast(PATHFINDING + index);
 
-                //MapLocation chunkCenter1 = origin.translate((nx + 0.5f) * PATHFINDING_CHUNK_SIZE * PATHFINDING_NODE_SIZE, (ny + 0.5f) * PATHFINDING_CHUNK_SIZE * PATHFINDING_NODE_SIZE);
-                //rc.debug_setIndicatorDot(chunkCenter1, chunkInfo == 0 ? 128 : 0, 0, rc.canSenseAllOfCircle(chunkCenter1, chunkRadius) ? 255 : 0);
-
-                boolean outdated = ((chunkInfo >> 21) & 0xF) != recalculationTime;
-                //noinspection NumericOverflow
-                if ((chunkInfo & (1 << 31)) == 0 || outdated) {
-                    // Chunk is not explored yet
-
-                    MapLocation chunkCenter = explorationOrigin.translate((nx + 0.5f) * PATHFINDING_CHUNK_SIZE * PATHFINDING_NODE_SIZE, (ny + 0.5f) * PATHFINDING_CHUNK_SIZE * PATHFINDING_NODE_SIZE);
-
-                    if (rc.canSensePartOfCircle(chunkCenter, PATHFINDING_CHUNK_RADIUS)) {
-                        float weight = 0.1f;
-                        if (rc.canSenseAllOfCircle(chunkCenter, PATHFINDING_CHUNK_RADIUS)) weight += 2;
-                        if (dx == 0 && dy == 0) weight += 0.2f;
-
-                        // Reservoir sampling
-                        totalWeight += weight;
-                        if (rnd.nextFloat() * totalWeight < weight) {
-                            // Start a new job
-                            jobChunkCenter = chunkCenter;
-                            jobChunkIndex = index;
-                            jobChunkNx = nx;
-                            jobChunkNy = ny;
-                            jobChunkNodeIndex = 0;
-                            // Clear the recalculation time for the chunk and update it with the current time
-                            jobChunkInfo = (chunkInfo & (~(0xF << 21))) | recalculationTime << 21;
-                            jobNodeSkips = 0;
-                            jobChunkWasOutdated = outdated;
-                        }
-                    }
+                // Explored chunks are only scanned again once part of them is outdated
+                int age = chunkInfo < 0 ? chunkAge(rc.readBroadcast(PATHFINDING_AGES + index), round) : 0;
+                if (chunkInfo < 0 && age == 0) continue;
+
+                // Another robot is already scanning it this round
+                int chunkClaim = rc.readBroadcast(PATHFINDING_CLAIMS + index);
+                if (chunkClaim >>> 15 == round && chunkClaim != claim) continue;
+
+                MapLocation chunkCenter = explorationOrigin.translate((nx + 0.5f) * PATHFINDING_CHUNK_SIZE * PATHFINDING_NODE_SIZE, (ny + 0.5f) * PATHFINDING_CHUNK_SIZE * PATHFINDING_NODE_SIZE);
+                if (!rc.canSensePartOfCircle(chunkCenter, PATHFINDING_CHUNK_RADIUS)) continue;
+
+                // Chunks that have never been fully explored are worth more than any outdated one
+                float value = chunkInfo < 0 ? age : 16;
+                // Only a chunk that can be seen completely can be marked as explored
+                if (rc.canSenseAllOfCircle(chunkCenter, PATHFINDING_CHUNK_RADIUS)) value *= 20;
+                // Chunks that this robot is about to move through matter most
+                if (ChunkPlanner.isOnRoute(index) || Corridor.passesThrough(index)) value *= 4;
+
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestIndex = index;
+                    bestCenter = chunkCenter;
                 }
             }
         }
+
+        if (bestIndex != -1) {
+            // Start a new job
+            rc.broadcast(PATHFINDING_CLAIMS + bestIndex, claim);
+            jobChunkCenter = bestCenter;
+            jobChunkIndex = bestIndex;
+            jobChunkNx = bestIndex % (PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE);
+            jobChunkNy = bestIndex / (PATHFINDING_WORLD_WIDTH / PATHFINDING_CHUNK_SIZE);
+        }
     }
 
+    /** Bytecodes needed to scan a chunk with a few trees in it, see doChunkJob */
+    private static final int CHUNK_SCAN_BYTECODES = 1500;
+
     static private MapLocation jobChunkCenter;
     static private int jobChunkIndex;
     static private int jobChunkNx;
     static private int jobChunkNy;
-    static private int jobChunkNodeIndex;
-    static private int jobChunkInfo;
-    static private int jobNodeSkips = 0;
-    static private boolean jobChunkWasOutdated;
+
+    /**
+     * Nodes of a chunk whose centers are within the circle, as a mask with the same bits as a chunk word.
+     * The circle is given in nodes relative to the center of the first node in the chunk.
+     */
+    static int nodesInCircle(float cx, float cy, float r) {
+        int minY = Math.max(0, (int)Math.ceil(cy - r));
+        int maxY = Math.min(PATHFINDING_CHUNK_SIZE - 1, (int)Math.floor(cy + r));
+        int mask = 0;
+        for (int y = minY; y <= maxY; y++) {
+            float dy = y - cy;
+            float half = (float)Math.sqrt(r * r - dy * dy);
+            int lo = Math.max(0, (int)Math.ceil(cx - half));
+            int hi = Math.min(PATHFINDING_CHUNK_SIZE - 1, (int)Math.floor(cx + half));
+            if (lo <= hi) mask |= ((1 << (hi + 1)) - (1 << lo)) << (PATHFINDING_CHUNK_SIZE * y);
+        }
+        return mask;
+    }
+
+    /** True if a chunk has been picked for exploration but not finished yet */
+    static boolean hasChunkJob() {
+        return jobChunkCenter != null;
+    }
 
     static boolean doChunkJob() throws GameActionException {
         if (jobChunkCenter == null) return true;
@@ -401,80 +610,104 @@ abstract class Robot {
         // Check if we can still see the whole chunk
         //if (!rc.canSenseAllOfCircle(jobChunkCenter, PATHFINDING_CHUNK_RADIUS)) return true;
 
-        int startingTime = Clock.getBytecodeNum();
-
-        //noinspection NumericOverflow
-        boolean alreadyFullyExplored = (jobChunkInfo & (1 << 31)) != 0;
-
-        // Loop through all the nodes in the chunk
-        for (; jobChunkNodeIndex < PATHFINDING_CHUNK_SIZE * PATHFINDING_CHUNK_SIZE; jobChunkNodeIndex++) {
-            if (Clock.getBytecodesLeft() < 500 || Clock.getBytecodeNum() - startingTime > 6000) return false;
-
-            int prevValue = jobChunkInfo & (1 << jobChunkNodeIndex);
-            if (prevValue != 0) {
-                if (!jobChunkWasOutdated) {
-                    // Seem we have already figured out that it is not traversable in an earlier update
-                    // and it wasn't too long ago. Assume the world looks the same.
-                    continue;
-                }
-            }
-
-            int y = jobChunkNodeIndex / 4;
-            int x = jobChunkNodeIndex % 4;
-
-            boolean traversable = true;
-
-            MapLocation nodeCenter = explorationOrigin.translate(((x + 0.5f) + jobChunkNx * PATHFINDING_CHUNK_SIZE) * PATHFINDING_NODE_SIZE, ((y + 0.5f) + jobChunkNy * PATHFINDING_CHUNK_SIZE) * PATHFINDING_NODE_SIZE);
-            if (!onMap(nodeCenter, PATHFINDING_NODE_SIZE * 0.5f)) {
-                traversable = false;
-            } else {
-                if (!rc.canSenseAllOfCircle(nodeCenter, PATHFINDING_NODE_SIZE)) {
-                    // Have to skip this one
-                    // If we have previously explored the whole chunk then we just want to update it
-                    // with as much new information as we can, don't count skipped nodes because they
-                    // will just contain the last information that was up to date
-                    if (!alreadyFullyExplored) {
-                        jobNodeSkips++;
-                        //rc.setIndicatorDot(nodeCenter, 0, 40, 0);
-                    }
-                    continue;
-                }
-
-                if (rc.isCircleOccupiedExceptByThisRobot(nodeCenter, PATHFINDING_NODE_SIZE * 0.5f) && rc.senseNearbyTrees(nodeCenter, PATHFINDING_NODE_SIZE * 0.5f, null).length > 0) {
-                    traversable = false;
-                }
+        // Keep the chunk claimed while the job takes several rounds, unless another robot took it over
+        int round = rc.getRoundNum();
+        int claim = round << 15 | (rc.getID() & 0x7FFF);
+        int chunkClaim = rc.readBroadcast(PATHFINDING_CLAIMS + jobChunkIndex);
+        if (chunkClaim != claim) {
+            if (chunkClaim >>> 15 == round) {
+                jobChunkCenter = null;
+                return true;
             }
+            rc.broadcast(PATHFINDING_CLAIMS + jobChunkIndex, claim);
+        }
 
-            // Clear that bit
-            jobChunkInfo &= ~(1 << jobChunkNodeIndex);
+        // The whole chunk is scanned at once
+        if (Clock.getBytecodesLeft() < CHUNK_SCAN_BYTECODES) return false;
+
+        // Positions are measured in nodes from the center of the first node in the chunk
+        float x0 = explorationOrigin.x + (jobChunkNx * PATHFINDING_CHUNK_SIZE + 0.5f) * PATHFINDING_NODE_SIZE;
+        float y0 = explorationOrigin.y + (jobChunkNy * PATHFINDING_CHUNK_SIZE + 0.5f) * PATHFINDING_NODE_SIZE;
+
+        // Nodes whose center is on the map at least half a node from the edges
+        int minX = Math.max(0, (int)Math.ceil((mapEdges2 - x0) / PATHFINDING_NODE_SIZE + 0.5f));
+        int maxX = Math.min(PATHFINDING_CHUNK_SIZE - 1, (int)Math.floor((mapEdges0 - x0) / PATHFINDING_NODE_SIZE - 0.5f));
+        int minY = Math.max(0, (int)Math.ceil((mapEdges3 - y0) / PATHFINDING_NODE_SIZE + 0.5f));
+        int maxY = Math.min(PATHFINDING_CHUNK_SIZE - 1, (int)Math.floor((mapEdges1 - y0) / PATHFINDING_NODE_SIZE - 0.5f));
+        int onMap = 0;
+        if (minX <= maxX) {
+            int row = (1 << (maxX + 1)) - (1 << minX);
+            for (int y = minY; y <= maxY; y++) onMap |= row << (PATHFINDING_CHUNK_SIZE * y);
+        }
 
-            if (!traversable) {
-                jobChunkInfo |= 1 << jobChunkNodeIndex;
+        // Nodes that can be sensed completely, so every tree touching them is sensed as well
+        MapLocation loc = rc.getLocation();
+        float rx = (loc.x - x0) / PATHFINDING_NODE_SIZE;
+        float ry = (loc.y - y0) / PATHFINDING_NODE_SIZE;
+        int sensed = type.sensorRadius < PATHFINDING_NODE_SIZE ? 0 : nodesInCircle(rx, ry, type.sensorRadius / PATHFINDING_NODE_SIZE - 1);
+
+        // A node is blocked if a tree overlaps the circle of half a node around its center
+        int blocked = 0;
+        if ((sensed & onMap) != 0) {
+            for (TreeInfo tree : rc.senseNearbyTrees(jobChunkCenter, PATHFINDING_CHUNK_RADIUS, null)) {
+                blocked |= nodesInCircle((tree.location.x - x0) / PATHFINDING_NODE_SIZE, (tree.location.y - y0) / PATHFINDING_NODE_SIZE, tree.radius / PATHFINDING_NODE_SIZE + 0.5f);
             }
         }
 
-        int nodesCalculated = PATHFINDING_CHUNK_SIZE * PATHFINDING_CHUNK_SIZE - jobNodeSkips;
-        int previousNodesCalculated = ((jobChunkInfo >> 16) & 0x1F);
-        // Clear the previous value
-        jobChunkInfo &= ~(0x1F << 16);
-        jobChunkInfo |= nodesCalculated << 16;
-        if (jobNodeSkips == 0) {
+        // Merge with what is known now, other robots may have scanned part of the chunk since the job started.
+        // Every node sensed now is written, but only the quadrants sensed completely get a new stamp.
+        int chunkInfo = rc.readBroadcast(PATHFINDING + jobChunkIndex);
+        int ages = rc.readBroadcast(PATHFINDING_AGES + jobChunkIndex);
+        // Nodes outside the map are never traversable
+        int known = (sensed | ~onMap) & 0xFFFF;
+        int covered = coveredQuadrants(known);
+        int fresh = freshNodes(ages, round);
+        chunkInfo = (chunkInfo & ~known) | ((blocked | ~onMap) & known);
+
+        // Nodes that are neither up to date nor sensed now
+        int skips = Integer.bitCount(~known & ~fresh & 0xFFFF);
+        chunkInfo = (chunkInfo & ~(0x1F << 16)) | (PATHFINDING_CHUNK_SIZE * PATHFINDING_CHUNK_SIZE - skips) << 16;
+        int newAges = stampQuadrants(ages, covered, round);
+        if (newAges != ages) rc.broadcast(PATHFINDING_AGES + jobChunkIndex, newAges);
+        // Nodes mirrored from the twin chunk may still be kept
+        if (known == 0xFFFF) chunkInfo &= ~CHUNK_INFERRED;
+        if (skips == 0) {
             // Mark as explored
             //noinspection NumericOverflow
-            jobChunkInfo |= 1 << 31;
-            rc.broadcast(PATHFINDING + jobChunkIndex, jobChunkInfo);
+            chunkInfo |= 1 << 31;
+            broadcastChunk(jobChunkIndex, chunkInfo);
+            Symmetry.mirrorChunk(jobChunkIndex, chunkInfo, newAges);
         } else {
-            // If we have more or the same amount of information as the last time
-            // this chunk was generated then update it, otherwise leave it be
-            if (nodesCalculated >= previousNodesCalculated) {
-                rc.broadcast(PATHFINDING + jobChunkIndex, jobChunkInfo);
-            }
+            broadcastChunk(jobChunkIndex, chunkInfo);
         }
 
         jobChunkCenter = null;
         return true;
     }
 
+    /**
+     * Writes the word for a chunk. If this changes which nodes are blocked or whether the chunk
+     * is fully explored, the change is logged (see logChunkChange).
+     */
+    static void broadcastChunk(int index, int chunkInfo) throws GameActionException {
+        int previous = rc.readBroadcast(PATHFINDING + index);
+        rc.broadcast(PATHFINDING + index, chunkInfo);
+
+        //noinspection NumericOverflow
+        if (((previous ^ chunkInfo) & (0xFFFF | 1 << 31)) != 0) logChunkChange(index);
+    }
+
+    /**
+     * Appends a chunk to the change log so that the archons can repair
+     * their pathfinding results instead of searching from scratch.
+     * Must be called whenever anything that affects the cost of moving through the chunk changes.
+     */
+    static void logChunkChange(int index) throws GameActionException {
+        int count = rc.readBroadcast(PATHFINDING_CHANGE_COUNT);
+        rc.broadcast(PATHFINDING_CHANGE_LOG + count % PATHFINDING_CHANGE_LOG_SIZE, index);
+        rc.broadcast(PATHFINDING_CHANGE_COUNT, count + 1);
+    }
+
     /**
      * True if the location is on the map using the information known so far
      */
@@ -594,15 +827,18 @@ abstract class Robot {
                         score = 150;
                         break;
                     case LUMBERJACK:
+                        addDanger(robot.location, 2);
                         score = 0;
                         break;
                     case SCOUT:
                         score = 0;
                         break;
                     case SOLDIER:
+                        addDanger(robot.location, 4);
                         score = (type == RobotType.GARDENER && rc.getHealth() < type.maxHealth ? 80f : 0f);
                         break;
                     case TANK:
+                        addDanger(robot.location, 8);
                         score = 0;
                         break;
                 }
@@ -617,6 +853,7 @@ abstract class Robot {
                 }
             }
         }
+        broadcastDanger();
         priority /= Math.sqrt(friendlyMilitaryUnits + 2);
 
         if (maxScoreLocation != null) {
@@ -692,6 +929,37 @@ abstract class Robot {
         rc.setIndicatorDot(pos, (int)(r * 255f), (int)(g * 255f), (int)(b * 255f));
     }
 
+    /**
+     * Prints everything this robot knows about the world, one record per line.
+     * The output can be loaded by OfflineWorld in the tests to run the bot code without the engine.
+     * Reading the whole broadcast array takes a few rounds, so this should only be used for debugging.
+     */
+    static void debug_printSnapshot() throws GameActionException {
+        String prefix = "SNAPSHOT " + rc.getID() + " ";
+        MapLocation loc = rc.getLocation();
+        System.out.println(prefix + "robot " + type + " " + ally + " " + rc.getID() + " " + loc.x + " " + loc.y + " " + rc.getHealth() + " " + rc.getRoundNum() + " " + rc.getRoundLimit());
+        System.out.println(prefix + "economy " + rc.getTeamBullets() + " " + rc.getTeamVictoryPoints() + " " + rc.getTreeCount() + " " + rc.getRobotCount());
+        System.out.println(prefix + "edges " + mapEdges0 + " " + mapEdges1 + " " + mapEdges2 + " " + mapEdges3);
+        for (Team team : new Team[]{Team.A, Team.B}) {
+            for (MapLocation archon : rc.getInitialArchonLocations(team)) {
+                System.out.println(prefix + "archon " + team + " " + archon.x + " " + archon.y);
+            }
+        }
+        for (TreeInfo tree : rc.senseNearbyTrees()) {
+            System.out.println(prefix + "tree " + tree.ID + " " + tree.team + " " + tree.location.x + " " + tree.location.y + " " + tree.radius + " " + tree.health + " " + tree.containedBullets + " " + (tree.containedRobot != null ? tree.containedRobot : "-"));
+        }
+        for (RobotInfo robot : rc.senseNearbyRobots()) {
+            System.out.println(prefix + "unit " + robot.ID + " " + robot.team + " " + robot.type + " " + robot.location.x + " " + robot.location.y + " " + robot.health);
+        }
+        for (BulletInfo bullet : rc.senseNearbyBullets()) {
+            System.out.println(prefix + "bullet " + bullet.ID + " " + bullet.location.x + " " + bullet.location.y + " " + bullet.dir.radians + " " + bullet.speed + " " + bullet.damage);
+        }
+        for (int i = 0; i < GameConstants.BROADCAST_MAX_CHANNELS; i++) {
+            int value = rc.readBroadcast(i);
+            if (value != 0) System.out.println(prefix + "channel " + i + " " + value);
+        }
+    }
+
     static void shakeNearbyTrees() throws GameActionException {
         if (rc.canShake()) {
             TreeInfo[] trees = rc.senseNearbyTrees(type.bodyRadius + GameConstants.INTERACTION_DIST_FROM_EDGE - 0.001f);
@@ -716,56 +984,7 @@ abstract class Robot {
         // Abort if all map edges have already been determined
         if (mapEdgesDetermined == 0xF) return;
 
-        int globalMapEdgesDetermined = rc.readBroadcast(MAP_EDGE_BROADCAST_OFFSET);
-        if (globalMapEdgesDetermined != mapEdgesDetermined) {
-            mapEdgesDetermined = globalMapEdgesDetermined;
-            mapEdges0 = rc.readBroadcastFloat(MAP_EDGE_BROADCAST_OFFSET + (0 + 1));
-            mapEdges1 = rc.readBroadcastFloat(MAP_EDGE_BROADCAST_OFFSET + (1 + 1));
-            mapEdges2 = rc.readBroadcastFloat(MAP_EDGE_BROADCAST_OFFSET + (2 + 1));
-            mapEdges3 = rc.readBroadcastFloat(MAP_EDGE_BROADCAST_OFFSET + (3 + 1));
-        }
-
-        int tmpDetermined = mapEdgesDetermined;
-        for (int i = 0; i < 4; i++) {
-            if ((mapEdgesDetermined & (1 << i)) == 0) {
-                float angle = i * (float)Math.PI / 2f;
-                if (!rc.onTheMap(rc.getLocation().add(angle, type.sensorRadius * 0.99f))) {
-                    // Found map edge
-                    float mn = 0f;
-                    float mx = type.sensorRadius * 0.99f;
-                    while (mx - mn > 0.002f) {
-                        float mid = (mn + mx) / 2;
-                        if (rc.onTheMap(rc.getLocation().add(angle, mid))) {
-                            mn = mid;
-                        } else {
-                            mx = mid;
-                        }
-                    }
-
-                    MapLocation mapEdge = rc.getLocation().add(angle, mn);
-                    float result = i % 2 == 0 ? mapEdge.x : mapEdge.y;
-                    rc.broadcastFloat(MAP_EDGE_BROADCAST_OFFSET + i + 1, result);
-                    // This robot will pick up the change for real the next time determineMapSize is called
-                    tmpDetermined |= (1 << i);
-                    rc.broadcast(MAP_EDGE_BROADCAST_OFFSET, tmpDetermined);
-                    System.out.println("Found map edge " + i + " at " + result);
-
-                    // We also know that the other edge of the map is no further than MAX_WIDTH away from this edge
-                    float otherEdge = i < 2 ? result - GameConstants.MAP_MAX_WIDTH : result + GameConstants.MAP_MAX_WIDTH;
-                    int otherEdgeIndex = MAP_EDGE_BROADCAST_OFFSET + ((i + 2) % 4) + 1;
-
-                    // Make sure we don't overwrite the edge with something worse
-                    float prevValueForOtherEdge = rc.readBroadcastFloat(otherEdgeIndex);
-                    if (i < 2) otherEdge = Math.max(otherEdge, prevValueForOtherEdge);
-                    else otherEdge = Math.min(otherEdge, prevValueForOtherEdge);
-
-                    rc.broadcastFloat(otherEdgeIndex, otherEdge);
-                    System.out.println("Other map edge " + ((i + 2) % 4) + " must be around " + otherEdge);
-
-                    rc.setIndicatorLine(mapEdge.add(angle + (float)Math.PI * 0.5f, 50), mapEdge.add(angle - (float)Math.PI * 0.5f, 50), 255, 255, 255);
-                }
-            }
-        }
+        MapBounds.update(rc.getLocation());
     }
 
     static int id0;
@@ -800,7 +1019,9 @@ abstract class Robot {
 
         RobotInfo bestRobot = null;
         float bestScore = 0;
-        
+
+        Profiler.begin(PROFILE_PICK_FIRE_TARGET);
+        Overruns.begin(Overruns.FIRE_AT_NEARBY_ROBOT);
         for (RobotInfo robot : hostileRobots) {
             if (Clock.getBytecodesLeft() < 1500) break;
 
@@ -881,6 +1102,8 @@ abstract class Robot {
                 bestRobot = robot;
             }
         }
+        Overruns.end();
+        Profiler.end();
 
         if (bestRobot != null) {
             float dist = rc.getLocation().distanceTo(bestRobot.location);
@@ -1174,6 +1397,8 @@ abstract class Robot {
     static MapLocation moveToAvoidBullets(MapLocation secondaryTarget, BulletInfo[] bullets, RobotInfo[] units) throws GameActionException {
         if (rc.hasMoved()) return null;
 
+        Profiler.begin(PROFILE_MOVE_TO_AVOID_BULLETS);
+        Overruns.begin(Overruns.MOVE_TO_AVOID_BULLETS);
         MapLocation myLocation = rc.getLocation();
 
         MapLocation reservedNodeLocation = null;
@@ -1191,7 +1416,13 @@ abstract class Robot {
         }
 
         if (bullets.length == 0 && type != RobotType.LUMBERJACK && type != RobotType.ARCHON && reservedNodeLocation == null) {
-            distBug(secondaryTarget);
+            if (LocalPlanner.move(secondaryTarget)) {
+                addToPositionHistory();
+            } else {
+                distBug(secondaryTarget);
+            }
+            Overruns.end();
+            Profiler.end();
             return null;
         } else {
             addToPositionHistory();
@@ -1294,6 +1525,9 @@ abstract class Robot {
             }
         }
 
+        Overruns.end();
+        Profiler.end();
+
         // We need to check again that the move is legal, in case we exceeded the bytecode limit
         if (bestMove != null && rc.canMove(bestMove)) {
             previousBestMove = bestMove.translate(-myLocation.x, -myLocation.y);
@@ -48,6 +48,7 @@ public strictfp class RobotPlayer {
             } catch (Exception e) {
                 System.out.println("Exception in " + rc.getType());
                 e.printStackTrace();
+                Profiler.clearOpenSections();
             }
         }
     }
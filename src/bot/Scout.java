@@ -20,10 +20,10 @@ class Scout extends Robot {
         return target;
     }
 
-    private float getPositionScore(MapLocation loc, RobotInfo[] units, int numBullets,
-                                   float[] bulletX, float[] bulletY, float[] bulletDx, float[] bulletDy,
-                                   float[] bulletDamage, float[] bulletSpeed, float[] bulletImpactDistances,
-                                   TreeInfo bestTree, MapLocation target) {
+    float getPositionScore(MapLocation loc, RobotInfo[] units, int numBullets,
+                           float[] bulletX, float[] bulletY, float[] bulletDx, float[] bulletDy,
+                           float[] bulletDamage, float[] bulletSpeed, float[] bulletImpactDistances,
+                           TreeInfo bestTree, MapLocation target) {
         float score = 0f;
         score += 3f / (loc.distanceSquaredTo(target) + 10);
 
@@ -0,0 +1,144 @@
+package bot;
+
+import battlecode.common.*;
+
+/**
+ * Symmetry of the map, inferred from the initial archon locations, used to mirror what is explored on one half
+ * of the map onto the other half.
+ * <p>
+ * Maps are either rotated by 180 degrees around their center or reflected across a vertical or horizontal line
+ * through it. The center is the mean of all initial archon locations, and a transform is possible if it maps our
+ * archons onto the enemy archons. When the exploration origin is set, the center is put in the middle of the grid,
+ * an even number of nodes from the origin (see {@link #explorationOrigin}), so that each chunk has exactly one twin
+ * chunk with the same nodes mirrored.
+ * <p>
+ * With few archons more than one transform may fit. Chunks are only mirrored if exactly one does, while the edges
+ * along an axis mirror each other if every transform that fits flips that axis (see MapBounds).
+ */
+class Symmetry {
+    static final int ROTATION = 1;
+    static final int REFLECT_X = 2;
+    static final int REFLECT_Y = 4;
+
+    /** Bit set of the transforms that map our archons onto the enemy archons */
+    static int candidates = 0;
+    static MapLocation center;
+
+    /** Number of nodes from the exploration origin to the center, it must be even for chunks to have twins */
+    private static final int CENTER_NODES = Robot.PATHFINDING_WORLD_WIDTH / 2;
+    private static final int CHUNKS_PER_ROW = Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE;
+    private static final float TOLERANCE = 0.01f;
+
+    static void init(MapLocation[] ours, MapLocation[] theirs) {
+        float x = 0;
+        float y = 0;
+        for (MapLocation loc : ours) {
+            x += loc.x;
+            y += loc.y;
+        }
+        for (MapLocation loc : theirs) {
+            x += loc.x;
+            y += loc.y;
+        }
+        int count = ours.length + theirs.length;
+        center = new MapLocation(x / count, y / count);
+
+        candidates = 0;
+        if (ours.length != theirs.length || count == 0) return;
+        if (maps(ours, theirs, ROTATION)) candidates |= ROTATION;
+        if (maps(ours, theirs, REFLECT_X)) candidates |= REFLECT_X;
+        if (maps(ours, theirs, REFLECT_Y)) candidates |= REFLECT_Y;
+    }
+
+    /** True if the transform maps every location in from onto a location in to */
+    private static boolean maps(MapLocation[] from, MapLocation[] to, int transform) {
+        for (MapLocation loc : from) {
+            MapLocation twin = transform(loc, transform);
+            boolean found = false;
+            for (MapLocation other : to) {
+                if (other.isWithinDistance(twin, TOLERANCE)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static MapLocation transform(MapLocation loc, int transform) {
+        float x = (transform & (ROTATION | REFLECT_X)) != 0 ? 2 * center.x - loc.x : loc.x;
+        float y = (transform & (ROTATION | REFLECT_Y)) != 0 ? 2 * center.y - loc.y : loc.y;
+        return new MapLocation(x, y);
+    }
+
+    /**
+     * Exploration origin that puts the center in the middle of the grid, or null if the symmetry is unknown.
+     * The whole map is within half the maximum map width of the center, so the grid covers it.
+     */
+    static MapLocation explorationOrigin() {
+        if (candidates == 0) return null;
+        return center.translate(-CENTER_NODES * Robot.PATHFINDING_NODE_SIZE, -CENTER_NODES * Robot.PATHFINDING_NODE_SIZE);
+    }
+
+    /** True if the transform is known to be one of the given ones */
+    private static boolean flips(int transforms) {
+        return candidates != 0 && (candidates & ~transforms) == 0;
+    }
+
+    /** The chunk that mirrors the given one, or -1 if it is not known or outside the grid */
+    static int twinChunk(int chunk) {
+        if (Integer.bitCount(candidates) != 1 || !isCentered()) return -1;
+
+        int cx = chunk % CHUNKS_PER_ROW;
+        int cy = chunk / CHUNKS_PER_ROW;
+        // Node i mirrors node 2 * CENTER_NODES - 1 - i
+        int last = (2 * CENTER_NODES - 1) / Robot.PATHFINDING_CHUNK_SIZE;
+        if (candidates != REFLECT_Y) cx = last - cx;
+        if (candidates != REFLECT_X) cy = last - cy;
+        if (cx < 0 || cy < 0 || cx >= CHUNKS_PER_ROW || cy >= CHUNKS_PER_ROW) return -1;
+        return cy * CHUNKS_PER_ROW + cx;
+    }
+
+    /** True if the exploration origin was placed by explorationOrigin, so that chunks have twins */
+    private static boolean isCentered() {
+        MapLocation origin = explorationOrigin();
+        return origin != null && Robot.explorationOrigin.isWithinDistance(origin, TOLERANCE);
+    }
+
+    /** The blocked bits of a chunk word mirrored like its twin chunk */
+    static int mirrorNodes(int word) {
+        // Reversing all 16 bits rotates the chunk, swapping the rows back leaves only the columns reversed
+        int rotated = Integer.reverse(word) >>> 16;
+        if (candidates == ROTATION) return rotated;
+        int rows = candidates == REFLECT_X ? rotated : word & 0xFFFF;
+        return (rows & 0xF) << 12 | (rows & 0xF0) << 4 | (rows >> 4) & 0xF0 | (rows >> 12) & 0xF;
+    }
+
+    /** The quadrant stamps of an age word (see Robot.AGE_ROUNDS) mirrored like its twin chunk */
+    static int mirrorAges(int ages) {
+        if (candidates == ROTATION) return Integer.reverseBytes(ages);
+        if (candidates == REFLECT_X) return (ages & 0x00FF00FF) << 8 | (ages >>> 8) & 0x00FF00FF;
+        return Integer.rotateLeft(ages, 16);
+    }
+
+    /**
+     * Writes the mirrored word and age word of a fully explored chunk to its twin, marked as inferred, unless the
+     * twin has been fully explored for real. Exploration scans inferred chunks again once they are outdated.
+     */
+    static void mirrorChunk(int chunk, int chunkInfo, int ages) throws GameActionException {
+        int twin = twinChunk(chunk);
+        if (twin < 0 || twin == chunk) return;
+
+        int previous = Robot.rc.readBroadcast(Robot.PATHFINDING + twin);
+        if (previous < 0 && (previous & Robot.CHUNK_INFERRED) == 0) return;
+
+        Robot.broadcastChunk(twin, (chunkInfo & ~0xFFFF) | mirrorNodes(chunkInfo) | Robot.CHUNK_INFERRED);
+        Robot.rc.broadcast(Robot.PATHFINDING_AGES + twin, mirrorAges(ages));
+    }
+
+    /** True if the given edge (in the order of Robot.mapEdges0-3) is known to mirror the opposite edge */
+    static boolean mirrorsEdge(int edge) {
+        return flips(edge % 2 == 0 ? ROTATION | REFLECT_X : ROTATION | REFLECT_Y);
+    }
+}
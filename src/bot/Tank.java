@@ -38,20 +38,9 @@ class Tank extends Robot {
         }
     }
 
+    /** Furthest point along the path to the enemy archons that can be reached in a straight line, see Corridor */
     static MapLocation pathfindingTarget() throws GameActionException {
-        MapLocation c = rc.getLocation();
-        for (int i = 0; i < 5; i++) {
-            MapLocation next = nextPointOnPathToEnemyArchon(c);
-            rc.setIndicatorLine(c, next, 100, 100, 0);
-            c = next;
-        }
-
-        // Try to take a shorter path
-        if (linecast(c) == null) {
-            return c;
-        } else {
-            return nextPointOnPathToEnemyArchon(rc.getLocation());
-        }
+        return Corridor.target();
     }
 
     static MapLocation highPriorityTargetCache;
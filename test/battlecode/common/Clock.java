@@ -0,0 +1,37 @@
+package battlecode.common;
+
+/**
+ * Stand-in for the engine's Clock which is used when bot code runs outside of the engine.
+ * <p>
+ * The engine version asks the instrumenter how many bytecodes the robot has used, which does not work
+ * in a plain JVM. Test classes come before the engine on the classpath so this class shadows the real one.
+ * <p>
+ * Unless something increments {@link #bytecodeNum} the robot always appears to have its whole budget left,
+ * so loops that are only bounded by the bytecode limit run until their iteration caps.
+ */
+public final class Clock {
+    /** Bytecodes used during the current round */
+    public static int bytecodeNum = 0;
+
+    /** Bytecode limit for the current robot */
+    public static int bytecodeLimit = 10000;
+
+    /** Called when the robot yields, after the bytecode counter has been reset */
+    public static Runnable onYield = null;
+
+    private Clock() {
+    }
+
+    public static void yield() {
+        bytecodeNum = 0;
+        if (onYield != null) onYield.run();
+    }
+
+    public static int getBytecodesLeft() {
+        return bytecodeLimit - bytecodeNum;
+    }
+
+    public static int getBytecodeNum() {
+        return bytecodeNum;
+    }
+}
@@ -0,0 +1,58 @@
+package bot;
+
+import battlecode.common.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BackgroundTasksTest {
+
+	@Before
+	public void setUp() throws Exception {
+		OfflineWorld world = OfflineWorld.load("test/scenarios/soldier-under-fire.snapshot");
+		world.install();
+		Robot.onStartOfTick();
+
+		// None of the tasks are overdue
+		Arrays.fill(BackgroundTasks.lastRun, 399);
+		BackgroundTasks.averageCost[BackgroundTasks.DETERMINE_MAP_SIZE] = 1000;
+		BackgroundTasks.averageCost[BackgroundTasks.SHAKE_NEARBY_TREES] = 300;
+		BackgroundTasks.averageCost[BackgroundTasks.BROADCAST_ENEMY_LOCATIONS] = 1000;
+	}
+
+	@Test
+	public void testPostponesTasksThatDoNotFit() throws GameActionException {
+		Clock.bytecodeNum = Clock.bytecodeLimit - 600;
+		BackgroundTasks.run();
+
+		assertEquals(400, BackgroundTasks.lastRun[BackgroundTasks.SHAKE_NEARBY_TREES]);
+		assertEquals(399, BackgroundTasks.lastRun[BackgroundTasks.DETERMINE_MAP_SIZE]);
+		assertEquals(399, BackgroundTasks.lastRun[BackgroundTasks.BROADCAST_EXPLORATION]);
+		assertEquals(399, BackgroundTasks.lastRun[BackgroundTasks.BROADCAST_ENEMY_LOCATIONS]);
+	}
+
+	@Test
+	public void testGardenersAlwaysShakeTrees() throws GameActionException {
+		Robot.type = RobotType.GARDENER;
+		try {
+			Clock.bytecodeNum = Clock.bytecodeLimit - 150;
+			BackgroundTasks.run();
+			assertEquals(400, BackgroundTasks.lastRun[BackgroundTasks.SHAKE_NEARBY_TREES]);
+		} finally {
+			Robot.type = RobotType.SOLDIER;
+		}
+	}
+
+	@Test
+	public void testRunsEverythingWhenIdle() throws GameActionException {
+		Clock.bytecodeNum = 0;
+		BackgroundTasks.run();
+
+		for (int i = 0; i < BackgroundTasks.TASK_COUNT; i++) {
+			assertEquals(400, BackgroundTasks.lastRun[i]);
+		}
+	}
+}
@@ -0,0 +1,317 @@
+package bot;
+
+import battlecode.common.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the number of bytecodes used by the hot paths and compares them to a budget file.
+ * <p>
+ * Each scenario runs in a fresh {@link InstrumentingClassLoader} so that no static state is shared between them.
+ * The budget file has one line per scenario with its name and the maximum number of bytecodes it may use.
+ * Usage:
+ * <pre>
+ * BytecodeBudgets playerClassesDir budgetFile [--update]
+ * </pre>
+ * Exits with a non-zero status if any scenario uses more bytecodes than its budget.
+ * With --update the budget file is instead rewritten with the measured values.
+ */
+public class BytecodeBudgets {
+    static final String[] SCENARIOS = {
+            "moveToAvoidBullets.10",
+            "moveToAvoidBullets.50",
+            "moveToAvoidBullets.100",
+            "doChunkJob",
+            "pathfinding",
+            "pathfindingFirst",
+            "broadcastPathfindingResult",
+            "broadcastPathfindingDiagonals",
+            "pathfindingRepair",
+            "waveSearch",
+            "chunkPlanner",
+            "localPlanner",
+            "localPlanner.wall",
+            "determineMapSize",
+            "determineMapSize.idle",
+    };
+
+    public static void main(String[] args) throws Exception {
+        File playerClasses = new File(args[0]);
+        String budgetFile = args[1];
+        boolean update = args.length > 2 && args[2].equals("--update");
+
+        Map<String, Long> measured = new LinkedHashMap<>();
+        for (String scenario : SCENARIOS) {
+            ClassLoader loader = new InstrumentingClassLoader(BytecodeBudgets.class.getClassLoader(), playerClasses);
+            Method measure = loader.loadClass(BytecodeBudgets.class.getName()).getDeclaredMethod("measure", String.class);
+            try {
+                measured.put(scenario, (Long)measure.invoke(null, scenario));
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException("Scenario " + scenario + " failed", e.getCause());
+            }
+        }
+
+        if (update) {
+            List<String> lines = new ArrayList<>();
+            lines.add("# Maximum number of bytecodes used by each hot path, checked by `./gradlew checkBytecodes`.");
+            lines.add("# Regenerate with `./gradlew checkBytecodes -PupdateBudgets` after an intended change.");
+            for (Map.Entry<String, Long> entry : measured.entrySet()) {
+                lines.add(entry.getKey() + " " + entry.getValue());
+            }
+            Files.write(Paths.get(budgetFile), lines, StandardCharsets.UTF_8);
+            System.out.println("Wrote " + budgetFile);
+            return;
+        }
+
+        Map<String, Long> budgets = readBudgets(budgetFile);
+        boolean failed = false;
+        System.out.println(String.format("%-30s %10s %10s", "scenario", "bytecodes", "budget"));
+        for (Map.Entry<String, Long> entry : measured.entrySet()) {
+            Long budget = budgets.get(entry.getKey());
+            String status = "";
+            if (budget == null) {
+                status = "NO BUDGET";
+                failed = true;
+            } else if (entry.getValue() > budget) {
+                status = "OVER BUDGET by " + (entry.getValue() - budget);
+                failed = true;
+            }
+            System.out.println(String.format("%-30s %10d %10s %s", entry.getKey(), entry.getValue(), budget == null ? "-" : budget.toString(), status));
+        }
+
+        if (failed) {
+            System.out.println("Bytecode budgets exceeded. If this is intended, update the budgets with -PupdateBudgets.");
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Long> readBudgets(String path) throws IOException {
+        Map<String, Long> budgets = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] t = line.split("\\s+");
+            budgets.put(t[0], Long.parseLong(t[1]));
+        }
+        return budgets;
+    }
+
+    /**
+     * Runs a single scenario and returns the number of bytecodes used by the measured call.
+     * Must be called from a class loaded by an {@link InstrumentingClassLoader}.
+     */
+    public static long measure(String scenario) throws Exception {
+        switch (scenario) {
+            case "moveToAvoidBullets.10":
+                return measureMoveToAvoidBullets(10);
+            case "moveToAvoidBullets.50":
+                return measureMoveToAvoidBullets(50);
+            case "moveToAvoidBullets.100":
+                return measureMoveToAvoidBullets(100);
+            case "doChunkJob":
+                return measureChunkJob();
+            case "pathfinding":
+                return measurePathfinding("search");
+            case "pathfindingFirst":
+                return measurePathfinding("first");
+            case "broadcastPathfindingResult":
+                return measurePathfinding("broadcast");
+            case "broadcastPathfindingDiagonals":
+                return measurePathfinding("diagonals");
+            case "pathfindingRepair":
+                return measurePathfindingRepair();
+            case "waveSearch":
+                return measurePathfinding("wave");
+            case "chunkPlanner":
+                return measureChunkPlanner();
+            case "localPlanner":
+                return measureLocalPlanner(false);
+            case "localPlanner.wall":
+                return measureLocalPlanner(true);
+            case "determineMapSize":
+                return measureDetermineMapSize(false);
+            case "determineMapSize.idle":
+                return measureDetermineMapSize(true);
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+    }
+
+    private static long measureMoveToAvoidBullets(int bullets) throws GameActionException {
+        OfflineWorld world = RandomWorlds.create(RobotType.SOLDIER, bullets, 5, 10, 100, 1);
+        OfflineRobotController rc = world.install();
+        BulletInfo[] nearbyBullets = rc.senseNearbyBullets();
+        RobotInfo[] nearbyUnits = rc.senseNearbyRobots();
+
+        Clock.bytecodeNum = 0;
+        Robot.moveToAvoidBullets(world.archonsB.get(0), nearbyBullets, nearbyUnits);
+        return Clock.bytecodeNum;
+    }
+
+    /**
+     * Total cost of exploring one chunk, which may be split over several calls
+     */
+    private static long measureChunkJob() throws GameActionException, IOException {
+        OfflineWorld world = OfflineWorld.load("test/scenarios/soldier-under-fire.snapshot");
+        world.install();
+
+        // Picks the chunk to explore
+        Robot.broadcastExploration();
+
+        long total = 0;
+        boolean done = false;
+        for (int calls = 0; !done; calls++) {
+            if (calls == 100) throw new IllegalStateException("Chunk job did not finish");
+
+            Clock.bytecodeNum = 0;
+            done = Robot.doChunkJob();
+            total += Clock.bytecodeNum;
+        }
+        return total;
+    }
+
+    /**
+     * Cost of one complete search on an explored 100x100 map, or of broadcasting its result along the grid and then
+     * with the diagonal steps.
+     * The first search also reads the chunk words and calculates the weights of the nodes, which is measured
+     * separately. Later searches, when the seeds change, reuse those.
+     * The wave part is the breadth first search that is broadcast before the first search, including the broadcast.
+     */
+    private static long measurePathfinding(String part) throws GameActionException {
+        OfflineWorld world = RandomWorlds.create(RobotType.ARCHON, 0, 0, 0, 100, 1);
+        world.install();
+        RandomWorlds.exploreMap(world, 200, 1);
+        Archon archon = new Archon();
+
+        // Let the searches run to completion instead of yielding part way through
+        Clock.bytecodeLimit = Integer.MAX_VALUE;
+        archon.allocatePathfinding();
+
+        Clock.bytecodeNum = 0;
+        archon.readChunkWords();
+        archon.updatePathfindingSeeds();
+        if (part.equals("wave")) {
+            Clock.bytecodeNum = 0;
+            archon.startWaveSearch();
+            archon.expandWaves();
+            archon.broadcastWaveResult();
+            return Clock.bytecodeNum;
+        }
+        archon.startFullSearch();
+        archon.expand();
+        if (part.equals("first")) return Clock.bytecodeNum;
+
+        Clock.bytecodeNum = 0;
+        if (part.equals("broadcast")) {
+            archon.broadcastPathfindingResult();
+        } else if (part.equals("diagonals")) {
+            archon.broadcastPathfindingResult();
+            Clock.bytecodeNum = 0;
+            archon.broadcastPathfindingDiagonals();
+        } else {
+            archon.startFullSearch();
+            archon.expand();
+        }
+        return Clock.bytecodeNum;
+    }
+
+    /**
+     * Cost of the pass that repairs the search and broadcasts the changed results
+     * after a wall a few chunks wide has been discovered in the middle of the map.
+     */
+    private static long measurePathfindingRepair() throws GameActionException {
+        OfflineWorld world = RandomWorlds.create(RobotType.ARCHON, 0, 0, 0, 100, 1);
+        world.install();
+        RandomWorlds.exploreMap(world, 200, 1);
+        Archon archon = new Archon();
+
+        Clock.bytecodeLimit = Integer.MAX_VALUE;
+        archon.allocatePathfinding();
+        archon.pathfinding();
+
+        RandomWorlds.addWall(world, 1, 3);
+
+        Clock.bytecodeNum = 0;
+        archon.pathfinding();
+        return Clock.bytecodeNum;
+    }
+
+    /**
+     * Cost of planning a route over the chunks from one corner of a large map to the other
+     * behind a wall, including loading every chunk that the search touches.
+     */
+    private static long measureChunkPlanner() throws GameActionException {
+        OfflineWorld world = RandomWorlds.create(RobotType.SOLDIER, 0, 0, 0, 100, 1);
+        world.install();
+        RandomWorlds.exploreMap(world, 200, 1);
+        RandomWorlds.addWall(world, 1, 9);
+        world.location = new MapLocation(10, 10);
+
+        Clock.bytecodeLimit = Integer.MAX_VALUE;
+        ChunkPlanner.allocate();
+        Clock.bytecodeNum = 0;
+        if (ChunkPlanner.waypointTowards(new MapLocation(90, 90)) == null) throw new IllegalStateException("No route");
+        return Clock.bytecodeNum;
+    }
+
+    /**
+     * Cost of the first move of a soldier that has a tree between it and its target, with the bytecode limit lifted
+     * so that the whole local search is measured, which has to fit in one turn.
+     * With a wall of trees it is instead the cost of a turn with the soldier's limit, in which the search does not
+     * finish and the soldier moves towards the closest cell found so far.
+     */
+    private static long measureLocalPlanner(boolean wall) throws GameActionException {
+        OfflineWorld world = RandomWorlds.create(RobotType.SOLDIER, 0, 0, 0, 60, 1);
+        int trees = wall ? 2 : 0;
+        for (int i = -trees; i <= trees; i++) {
+            world.trees.add(new TreeInfo(1000 + i, Team.NEUTRAL, world.location.translate(2.5f, 2 * i), 1f, 50f, 0, null));
+        }
+        world.install();
+
+        Clock.bytecodeLimit = wall ? RobotType.SOLDIER.bytecodeLimit : Integer.MAX_VALUE;
+        Clock.bytecodeNum = 0;
+        if (!LocalPlanner.move(world.location.translate(5, 0))) throw new IllegalStateException("No move");
+        return Clock.bytecodeNum;
+    }
+
+    /**
+     * Total cost of finding the map edges from a scout near a corner of the map, until they are all known,
+     * or the cost of a later call from the middle of the map where no edge is in sight
+     */
+    private static long measureDetermineMapSize(boolean idle) throws GameActionException {
+        OfflineWorld world = RandomWorlds.create(RobotType.SCOUT, 0, 0, 0, 60, 1);
+        // Keep the center of the map but not at whole coordinates
+        world.minX = world.minY = 7.3f;
+        world.maxX = world.maxY = 52.7f;
+        world.location = idle ? world.location : new MapLocation(15.8f, 13.8f);
+        world.install();
+
+        if (idle) {
+            Robot.determineMapSize();
+            Clock.bytecodeNum = 0;
+            Robot.determineMapSize();
+            return Clock.bytecodeNum;
+        }
+
+        long total = 0;
+        for (int calls = 0; Robot.mapEdgesDetermined != 0xF; calls++) {
+            if (calls == 10) throw new IllegalStateException("Map edges were not determined");
+
+            Clock.bytecodeNum = 0;
+            Robot.determineMapSize();
+            total += Clock.bytecodeNum;
+        }
+        return total;
+    }
+}
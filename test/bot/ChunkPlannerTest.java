@@ -0,0 +1,139 @@
+package bot;
+
+import battlecode.common.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChunkPlannerTest {
+
+	private OfflineWorld world;
+
+	@Before
+	public void setUp() throws Exception {
+		world = RandomWorlds.create(RobotType.SOLDIER, 0, 0, 0, 60, 1);
+		world.install();
+		RandomWorlds.exploreMap(world, 0, 1);
+		Clock.bytecodeNum = 0;
+		Clock.bytecodeLimit = Integer.MAX_VALUE;
+		ChunkPlanner.allocate();
+	}
+
+	/** Follows the waypoints from the robot's location to the chunk of the target and returns the chunks visited */
+	private int[] followRoute(MapLocation target) throws GameActionException {
+		int[] chunks = new int[100];
+		int count = 0;
+		chunks[count++] = ChunkPlanner.chunkOf(world.location);
+		while (ChunkPlanner.chunkOf(world.location) != ChunkPlanner.chunkOf(target)) {
+			assertTrue(count < chunks.length);
+			MapLocation waypoint = ChunkPlanner.waypointTowards(target);
+			assertNotNull(waypoint);
+			int chunk = ChunkPlanner.chunkOf(waypoint);
+
+			// Every step moves into a neighbouring chunk
+			int previous = chunks[count - 1];
+			assertEquals(1, Math.abs(chunk % 25 - previous % 25) + Math.abs(chunk / 25 - previous / 25));
+			chunks[count++] = chunk;
+			world.location = waypoint;
+		}
+		return java.util.Arrays.copyOf(chunks, count);
+	}
+
+	@Test
+	public void testStraightRouteOnOpenMap() throws GameActionException {
+		MapLocation target = world.location.translate(0, 20);
+		int[] route = followRoute(target);
+		int start = route[0];
+		int goal = ChunkPlanner.chunkOf(target);
+		assertEquals(Math.abs(goal / 25 - start / 25), route.length - 1);
+	}
+
+	@Test
+	public void testRouteAvoidsWall() throws GameActionException {
+		// Block every row of the chunks between the robot and the target
+		for (int row = 0; row < 4; row++) RandomWorlds.addWall(world, row, 3);
+		world.location = world.location.translate(0, -10);
+		MapLocation target = world.location.translate(0, 20);
+		int[] route = followRoute(target);
+
+		for (int chunk : route) {
+			int word = world.broadcast[Robot.PATHFINDING + chunk];
+			assertNotEquals("chunk " + chunk, 0xFFFF, word & 0xFFFF);
+		}
+	}
+
+	@Test
+	public void testReplansAfterChange() throws GameActionException {
+		MapLocation target = world.location.translate(0, 20);
+		assertNotNull(ChunkPlanner.waypointTowards(target));
+
+		// A wall across the next chunk on the route must send the robot around it
+		int next = ChunkPlanner.chunkOf(ChunkPlanner.waypointTowards(target));
+		Robot.broadcastChunk(next, world.broadcast[Robot.PATHFINDING + next] | 0xFFFF);
+		MapLocation waypoint = ChunkPlanner.waypointTowards(target);
+		assertNotNull(waypoint);
+		assertNotEquals(next, ChunkPlanner.chunkOf(waypoint));
+	}
+
+	@Test
+	public void testCountsCornerGapOnce() throws GameActionException {
+		int start = ChunkPlanner.chunkOf(world.location);
+		int[] offsets = { 1, 25, -1, -25 };
+		// The side of the neighbour that faces the start chunk
+		int[] sides = { 0x1111, 0x000F, 0x8888, 0xF000 };
+		for (int dir = 0; dir < 4; dir++) {
+			int neighbour = start + offsets[dir];
+			for (int corner : new int[] { Integer.lowestOneBit(sides[dir]), Integer.highestOneBit(sides[dir]) }) {
+				// Only the corner node of the neighbour is free
+				Robot.broadcastChunk(start, 1 << 31);
+				Robot.broadcastChunk(neighbour, 1 << 31 | (0xFFFF & ~corner));
+				ChunkPlanner.allocate();
+				int expected = 4 * ChunkPlanner.COST_FREE + ChunkPlanner.COST_OBSTRUCTION * (15 + 4 - 1);
+				assertEquals("direction " + dir + " corner " + corner, expected, ChunkPlanner.edgeCost(start, dir));
+			}
+		}
+	}
+
+	@Test
+	public void testChargesUnknownChunks() throws GameActionException {
+		int start = ChunkPlanner.chunkOf(world.location);
+		int[] offsets = { 1, 25, -1, -25 };
+		for (int dir = 0; dir < 4; dir++) {
+			// An open neighbour that has not been explored yet
+			Robot.broadcastChunk(start, 1 << 31);
+			Robot.broadcastChunk(start + offsets[dir], 0);
+			ChunkPlanner.allocate();
+			assertEquals("direction " + dir, 4 * ChunkPlanner.COST_UNKNOWN, ChunkPlanner.edgeCost(start, dir));
+		}
+	}
+
+	@Test
+	public void testDoesNotLeaveSouthSideThroughWestSide() throws GameActionException {
+		// A diagonal wall separates the south and east sides of the chunk from its west and north sides
+		int start = ChunkPlanner.chunkOf(world.location);
+		int above = start + 25;
+		Robot.broadcastChunk(above, world.broadcast[Robot.PATHFINDING + above] | 0x8421);
+		// Going west first is blocked, so the shortest route would be through the wall
+		Robot.broadcastChunk(start - 1, world.broadcast[Robot.PATHFINDING + start - 1] | 0xFFFF);
+		int goal = above - 1;
+		MapLocation target = Robot.nodePosition(goal % 25 * 4 + 1, goal / 25 * 4 + 1);
+		int[] route = followRoute(target);
+		for (int i = 2; i < route.length; i++) {
+			assertFalse("route crosses chunk " + above, route[i - 2] == start && route[i - 1] == above && route[i] == goal);
+		}
+	}
+
+	@Test
+	public void testDoesNotCrossWallInsideChunk() throws GameActionException {
+		// A wall along the middle of the chunk separates its south side from its north side
+		int start = ChunkPlanner.chunkOf(world.location);
+		int above = start + 25;
+		Robot.broadcastChunk(above, world.broadcast[Robot.PATHFINDING + above] | 0x0F00);
+		MapLocation target = world.location.translate(0, 20);
+		int[] route = followRoute(target);
+		for (int i = 2; i < route.length; i++) {
+			assertFalse("route crosses chunk " + above, route[i - 2] == start && route[i - 1] == above && route[i] == above + 25);
+		}
+	}
+}
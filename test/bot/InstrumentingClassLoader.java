@@ -0,0 +1,199 @@
+package bot;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Class loader that counts the bytecodes executed by the player code, similar to what the engine does.
+ * <p>
+ * All classes in the bot package are loaded by this class loader so that the test harness classes can
+ * still access package-private members. Only classes from the player's own output directory are instrumented.
+ * Every executed instruction adds one to Clock.bytecodeNum in the offline Clock, so Clock.getBytecodeNum
+ * and Clock.getBytecodesLeft behave like they do in a match.
+ * <p>
+ * The engine additionally charges a fixed cost for some library methods. That is not modelled here,
+ * calls to code outside the player package cost a single bytecode.
+ */
+class InstrumentingClassLoader extends ClassLoader {
+    private static final String CLOCK = "battlecode/common/Clock";
+
+    private final String instrumentedRoot;
+
+    InstrumentingClassLoader(ClassLoader parent, File instrumentedClassesDir) throws MalformedURLException {
+        super(parent);
+        instrumentedRoot = instrumentedClassesDir.getAbsoluteFile().toURI().toURL().toString();
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (!name.startsWith("bot.")) return super.loadClass(name, resolve);
+
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded == null) {
+                URL url = getParent().getResource(name.replace('.', '/') + ".class");
+                if (url == null) throw new ClassNotFoundException(name);
+
+                byte[] bytes;
+                try {
+                    bytes = readAll(url);
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+
+                if (url.toString().startsWith(instrumentedRoot)) bytes = instrument(bytes);
+                loaded = defineClass(name, bytes, 0, bytes.length);
+            }
+
+            if (resolve) resolveClass(loaded);
+            return loaded;
+        }
+    }
+
+    private static byte[] readAll(URL url) throws IOException {
+        try (InputStream in = url.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+    }
+
+    static byte[] instrument(byte[] bytes) {
+        ClassReader reader = new ClassReader(bytes);
+        ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+        reader.accept(new ClassVisitor(Opcodes.ASM5, writer) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                return new CountingMethodVisitor(super.visitMethod(access, name, desc, signature, exceptions));
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Adds the number of instructions in each basic block to the counter.
+     * The count is flushed before every label and before every instruction that transfers control,
+     * so the counter is up to date whenever other code could observe it.
+     */
+    private static class CountingMethodVisitor extends MethodVisitor {
+        private int pending = 0;
+
+        CountingMethodVisitor(MethodVisitor mv) {
+            super(Opcodes.ASM5, mv);
+        }
+
+        private void flush() {
+            if (pending == 0) return;
+
+            super.visitFieldInsn(Opcodes.GETSTATIC, CLOCK, "bytecodeNum", "I");
+            super.visitLdcInsn(pending);
+            super.visitInsn(Opcodes.IADD);
+            super.visitFieldInsn(Opcodes.PUTSTATIC, CLOCK, "bytecodeNum", "I");
+            pending = 0;
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            flush();
+            super.visitLabel(label);
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            pending++;
+            if ((opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) || opcode == Opcodes.ATHROW) flush();
+            super.visitInsn(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            pending++;
+            super.visitIntInsn(opcode, operand);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            pending++;
+            super.visitVarInsn(opcode, var);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            pending++;
+            super.visitTypeInsn(opcode, type);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+            pending++;
+            super.visitFieldInsn(opcode, owner, name, desc);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+            pending++;
+            flush();
+            super.visitMethodInsn(opcode, owner, name, desc, itf);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+            pending++;
+            flush();
+            super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            pending++;
+            flush();
+            super.visitJumpInsn(opcode, label);
+        }
+
+        @Override
+        public void visitLdcInsn(Object cst) {
+            pending++;
+            super.visitLdcInsn(cst);
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            pending++;
+            super.visitIincInsn(var, increment);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            pending++;
+            flush();
+            super.visitTableSwitchInsn(min, max, dflt, labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            pending++;
+            flush();
+            super.visitLookupSwitchInsn(dflt, keys, labels);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String desc, int dims) {
+            pending++;
+            super.visitMultiANewArrayInsn(desc, dims);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package bot;
+
+import battlecode.common.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LocalPlannerTest {
+
+	private OfflineWorld world;
+
+	@Before
+	public void setUp() throws Exception {
+		world = RandomWorlds.create(RobotType.SOLDIER, 0, 0, 0, 60, 1);
+		world.install();
+	}
+
+	/**
+	 * Moves towards the target every round with the bytecode limit of the unit, until the target is reached.
+	 * Returns the number of rounds it took.
+	 */
+	private int walkTo(MapLocation target, int maxRounds) throws GameActionException {
+		for (int round = 0; round < maxRounds; round++) {
+			if (world.location.isWithinDistance(target, 0.01f)) return round;
+
+			world.nextRound();
+			Clock.bytecodeNum = 0;
+			if (!LocalPlanner.move(target)) {
+				// Nothing in the way
+				Direction dir = world.location.directionTo(target);
+				float distance = Math.min(world.location.distanceTo(target), world.type.strideRadius);
+				assertTrue("stuck at " + world.location, Robot.rc.canMove(dir, distance));
+				Robot.rc.move(dir, distance);
+			}
+		}
+		return -1;
+	}
+
+	@Test
+	public void testWalksAroundWallOfTrees() throws GameActionException {
+		MapLocation start = world.location;
+		for (int i = -2; i <= 2; i++) {
+			world.trees.add(new TreeInfo(1000 + i, Team.NEUTRAL, start.translate(2.5f, 2 * i), 1f, 50f, 0, null));
+		}
+
+		MapLocation target = start.translate(6, 0);
+		int rounds = walkTo(target, 30);
+		assertTrue(rounds > 0);
+		// Around the wall is roughly 2 * sqrt(6 * 6 + 3 * 3) units, and the search takes a few rounds
+		assertTrue("took " + rounds + " rounds", rounds <= 20);
+	}
+
+	@Test
+	public void testGoesStraightWithoutObstacles() throws GameActionException {
+		MapLocation target = world.location.translate(0, 3);
+		assertFalse(LocalPlanner.move(target));
+	}
+}
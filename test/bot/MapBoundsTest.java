@@ -0,0 +1,89 @@
+package bot;
+
+import battlecode.common.*;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MapBoundsTest {
+
+	private static OfflineWorld createWorld(float x, float y) throws GameActionException {
+		return createWorld(x, y, new MapLocation(22, 32), new MapLocation(58, 68));
+	}
+
+	private static OfflineWorld createWorld(float x, float y, MapLocation... archons) throws GameActionException {
+		OfflineWorld world = RandomWorlds.create(RobotType.SCOUT, 0, 0, 0, 60, 1);
+		world.minX = 10;
+		world.minY = 20;
+		world.maxX = 70;
+		world.maxY = 80;
+		world.archonsA.clear();
+		world.archonsB.clear();
+		for (int i = 0; i < archons.length; i += 2) {
+			world.archonsA.add(archons[i]);
+			world.archonsB.add(archons[i + 1]);
+		}
+		world.location = new MapLocation(x, y);
+		world.install();
+		return world;
+	}
+
+	private static void assertEdges(OfflineWorld world) {
+		assertEquals(world.maxX, Robot.mapEdges0, MapBounds.TOLERANCE);
+		assertEquals(world.maxY, Robot.mapEdges1, MapBounds.TOLERANCE);
+		assertEquals(world.minX, Robot.mapEdges2, MapBounds.TOLERANCE);
+		assertEquals(world.minY, Robot.mapEdges3, MapBounds.TOLERANCE);
+	}
+
+	@Test
+	public void testStartsWithinSymmetryAndWidthLimits() throws GameActionException {
+		createWorld(40, 50);
+		assertEquals(0, Robot.mapEdgesDetermined);
+		assertEquals(50 + GameConstants.MAP_MAX_WIDTH * 0.5f, Robot.mapEdges1, 1e-4);
+		assertEquals(50 - GameConstants.MAP_MAX_WIDTH * 0.5f, Robot.mapEdges3, 1e-4);
+		// Coordinates are never negative, so the map is at most 80 wide around x = 40
+		assertEquals(80, Robot.mapEdges0, 1e-4);
+		// The archons are on the map, and so are their mirrored locations
+		assertEquals(58 + RobotType.ARCHON.bodyRadius, MapBounds.inner[0], 1e-4);
+		assertEquals(-(22 - RobotType.ARCHON.bodyRadius), MapBounds.inner[2], 1e-4);
+	}
+
+	@Test
+	public void testMirrorsEdgesFoundNearACorner() throws GameActionException {
+		OfflineWorld world = createWorld(16, 25);
+		Robot.determineMapSize();
+		assertEquals(0xF, Robot.mapEdgesDetermined);
+		assertEdges(world);
+
+		// Another robot picks up the edges from the broadcast
+		world.location = new MapLocation(40, 50);
+		world.install();
+		assertEquals(0, Robot.mapEdgesDetermined);
+		Robot.determineMapSize();
+		assertEquals(0xF, Robot.mapEdgesDetermined);
+		assertEdges(world);
+	}
+
+	@Test
+	public void testDoesNotProbeEdgesOutOfRange() throws GameActionException {
+		OfflineWorld world = createWorld(40, 50);
+		float[] inner = MapBounds.inner.clone();
+		float[] outer = MapBounds.outer.clone();
+		for (int i = 0; i < 4; i++) {
+			assertFalse(MapBounds.probe(i, world.location, 5));
+		}
+		assertArrayEquals(inner, MapBounds.inner, 0);
+		assertArrayEquals(outer, MapBounds.outer, 0);
+	}
+
+	@Test
+	public void testNarrowsWidthWithoutSymmetry() throws GameActionException {
+		OfflineWorld world = createWorld(16, 25, new MapLocation(22, 32), new MapLocation(50, 64), new MapLocation(30, 40), new MapLocation(45, 50));
+		assertEquals(0, Symmetry.candidates);
+
+		Robot.determineMapSize();
+		assertEquals(4 | 8, Robot.mapEdgesDetermined);
+		assertEquals(world.minX + GameConstants.MAP_MAX_WIDTH, Robot.mapEdges0, MapBounds.TOLERANCE);
+		assertEquals(world.minY + GameConstants.MAP_MAX_WIDTH, Robot.mapEdges1, MapBounds.TOLERANCE);
+	}
+}
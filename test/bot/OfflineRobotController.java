@@ -0,0 +1,666 @@
+package bot;
+
+import battlecode.common.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * RobotController backed by an {@link OfflineWorld}.
+ * <p>
+ * Sensing, movement and broadcasting behave like in the engine as far as the bot code can tell.
+ * Actions that would change other parts of the world (firing, building, chopping etc.) only update
+ * the robot's own state, the world does not simulate their effects.
+ */
+class OfflineRobotController implements RobotController {
+    final OfflineWorld world;
+    private final long[] teamMemory = new long[GameConstants.TEAM_MEMORY_LENGTH];
+
+    /** Number of actions (fire, strike, chop, shake, water, build, donate) performed */
+    int actions = 0;
+
+    OfflineRobotController(OfflineWorld world) {
+        this.world = world;
+    }
+
+    private static GameActionException cantDoThat(String message) {
+        return new GameActionException(GameActionExceptionType.CANT_DO_THAT, message);
+    }
+
+    private float radius(float radius) {
+        return radius < 0 ? world.type.sensorRadius : radius;
+    }
+
+    private <T extends BodyInfo> T[] sortedByDistance(List<T> bodies, MapLocation center, T[] result) {
+        bodies.sort(Comparator.comparingDouble(b -> b.getLocation().distanceSquaredTo(center)));
+        return bodies.toArray(result);
+    }
+
+    private void checkChannel(int channel) throws GameActionException {
+        if (channel < 0 || channel >= world.broadcast.length) {
+            throw new GameActionException(GameActionExceptionType.CANT_DO_THAT, "Channel out of range: " + channel);
+        }
+    }
+
+    // Game info
+
+    @Override
+    public int getRoundLimit() {
+        return world.roundLimit;
+    }
+
+    @Override
+    public int getRoundNum() {
+        return world.round;
+    }
+
+    @Override
+    public float getTeamBullets() {
+        return world.teamBullets;
+    }
+
+    @Override
+    public int getTeamVictoryPoints() {
+        return world.victoryPoints;
+    }
+
+    @Override
+    public int getOpponentVictoryPoints() {
+        return 0;
+    }
+
+    @Override
+    public int getRobotCount() {
+        return world.robotCount;
+    }
+
+    @Override
+    public int getTreeCount() {
+        return world.treeCount;
+    }
+
+    @Override
+    public MapLocation[] getInitialArchonLocations(Team t) {
+        List<MapLocation> archons = t == Team.A ? world.archonsA : t == Team.B ? world.archonsB : new ArrayList<>();
+        return archons.toArray(new MapLocation[archons.size()]);
+    }
+
+    // Robot info
+
+    @Override
+    public int getID() {
+        return world.id;
+    }
+
+    @Override
+    public Team getTeam() {
+        return world.team;
+    }
+
+    @Override
+    public RobotType getType() {
+        return world.type;
+    }
+
+    @Override
+    public MapLocation getLocation() {
+        return world.location;
+    }
+
+    @Override
+    public float getHealth() {
+        return world.health;
+    }
+
+    @Override
+    public int getAttackCount() {
+        return world.hasAttacked ? 1 : 0;
+    }
+
+    @Override
+    public int getMoveCount() {
+        return world.hasMoved ? 1 : 0;
+    }
+
+    // Sensing
+
+    @Override
+    public boolean onTheMap(MapLocation loc) {
+        return world.onTheMap(loc, 0);
+    }
+
+    @Override
+    public boolean onTheMap(MapLocation center, float radius) {
+        return world.onTheMap(center, radius);
+    }
+
+    @Override
+    public boolean canSenseBulletLocation(MapLocation loc) {
+        return canSenseLocation(loc);
+    }
+
+    @Override
+    public boolean canSenseLocation(MapLocation loc) {
+        return world.location.isWithinDistance(loc, world.type.sensorRadius);
+    }
+
+    @Override
+    public boolean canSensePartOfCircle(MapLocation center, float radius) {
+        return world.location.isWithinDistance(center, world.type.sensorRadius + radius);
+    }
+
+    @Override
+    public boolean canSenseAllOfCircle(MapLocation center, float radius) {
+        return world.location.distanceTo(center) + radius <= world.type.sensorRadius;
+    }
+
+    @Override
+    public boolean isLocationOccupied(MapLocation loc) {
+        return world.isCircleOccupied(loc, 0, true);
+    }
+
+    @Override
+    public boolean isLocationOccupiedByTree(MapLocation loc) {
+        return senseTreeAtLocation(loc) != null;
+    }
+
+    @Override
+    public boolean isLocationOccupiedByRobot(MapLocation loc) {
+        return senseRobotAtLocation(loc) != null || world.location.isWithinDistance(loc, world.type.bodyRadius);
+    }
+
+    @Override
+    public boolean isCircleOccupied(MapLocation center, float radius) {
+        return world.isCircleOccupied(center, radius, true);
+    }
+
+    @Override
+    public boolean isCircleOccupiedExceptByThisRobot(MapLocation center, float radius) {
+        return world.isCircleOccupied(center, radius, false);
+    }
+
+    @Override
+    public TreeInfo senseTreeAtLocation(MapLocation loc) {
+        for (TreeInfo tree : world.trees) {
+            if (tree.location.isWithinDistance(loc, tree.radius)) return tree;
+        }
+        return null;
+    }
+
+    @Override
+    public RobotInfo senseRobotAtLocation(MapLocation loc) {
+        for (RobotInfo robot : world.robots) {
+            if (robot.location.isWithinDistance(loc, robot.type.bodyRadius)) return robot;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean canSenseTree(int id) {
+        for (TreeInfo tree : world.trees) {
+            if (tree.ID == id) return canSensePartOfCircle(tree.location, tree.radius);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean canSenseRobot(int id) {
+        for (RobotInfo robot : world.robots) {
+            if (robot.ID == id) return canSensePartOfCircle(robot.location, robot.type.bodyRadius);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean canSenseBullet(int id) {
+        for (BulletInfo bullet : world.bullets) {
+            if (bullet.ID == id) return canSenseLocation(bullet.location);
+        }
+        return false;
+    }
+
+    @Override
+    public TreeInfo senseTree(int id) throws GameActionException {
+        for (TreeInfo tree : world.trees) {
+            if (tree.ID == id && canSensePartOfCircle(tree.location, tree.radius)) return tree;
+        }
+        throw new GameActionException(GameActionExceptionType.CANT_SENSE_THAT, "Can't sense tree " + id);
+    }
+
+    @Override
+    public RobotInfo senseRobot(int id) throws GameActionException {
+        for (RobotInfo robot : world.robots) {
+            if (robot.ID == id && canSensePartOfCircle(robot.location, robot.type.bodyRadius)) return robot;
+        }
+        throw new GameActionException(GameActionExceptionType.CANT_SENSE_THAT, "Can't sense robot " + id);
+    }
+
+    @Override
+    public BulletInfo senseBullet(int id) throws GameActionException {
+        for (BulletInfo bullet : world.bullets) {
+            if (bullet.ID == id && canSenseLocation(bullet.location)) return bullet;
+        }
+        throw new GameActionException(GameActionExceptionType.CANT_SENSE_THAT, "Can't sense bullet " + id);
+    }
+
+    @Override
+    public RobotInfo[] senseNearbyRobots() {
+        return senseNearbyRobots(world.location, -1, null);
+    }
+
+    @Override
+    public RobotInfo[] senseNearbyRobots(float radius) {
+        return senseNearbyRobots(world.location, radius, null);
+    }
+
+    @Override
+    public RobotInfo[] senseNearbyRobots(float radius, Team team) {
+        return senseNearbyRobots(world.location, radius, team);
+    }
+
+    @Override
+    public RobotInfo[] senseNearbyRobots(MapLocation center, float radius, Team team) {
+        radius = radius(radius);
+        List<RobotInfo> result = new ArrayList<>();
+        for (RobotInfo robot : world.robots) {
+            if ((team == null || robot.team == team) && robot.location.isWithinDistance(center, radius + robot.type.bodyRadius) && canSensePartOfCircle(robot.location, robot.type.bodyRadius)) {
+                result.add(robot);
+            }
+        }
+        return sortedByDistance(result, center, new RobotInfo[0]);
+    }
+
+    @Override
+    public TreeInfo[] senseNearbyTrees() {
+        return senseNearbyTrees(world.location, -1, null);
+    }
+
+    @Override
+    public TreeInfo[] senseNearbyTrees(float radius) {
+        return senseNearbyTrees(world.location, radius, null);
+    }
+
+    @Override
+    public TreeInfo[] senseNearbyTrees(float radius, Team team) {
+        return senseNearbyTrees(world.location, radius, team);
+    }
+
+    @Override
+    public TreeInfo[] senseNearbyTrees(MapLocation center, float radius, Team team) {
+        radius = radius(radius);
+        List<TreeInfo> result = new ArrayList<>();
+        for (TreeInfo tree : world.trees) {
+            if ((team == null || tree.team == team) && tree.location.isWithinDistance(center, radius + tree.radius) && canSensePartOfCircle(tree.location, tree.radius)) {
+                result.add(tree);
+            }
+        }
+        return sortedByDistance(result, center, new TreeInfo[0]);
+    }
+
+    @Override
+    public BulletInfo[] senseNearbyBullets() {
+        return senseNearbyBullets(world.location, -1);
+    }
+
+    @Override
+    public BulletInfo[] senseNearbyBullets(float radius) {
+        return senseNearbyBullets(world.location, radius);
+    }
+
+    @Override
+    public BulletInfo[] senseNearbyBullets(MapLocation center, float radius) {
+        radius = radius(radius);
+        List<BulletInfo> result = new ArrayList<>();
+        for (BulletInfo bullet : world.bullets) {
+            if (bullet.location.isWithinDistance(center, radius) && canSenseLocation(bullet.location)) {
+                result.add(bullet);
+            }
+        }
+        return sortedByDistance(result, center, new BulletInfo[0]);
+    }
+
+    @Override
+    public MapLocation[] senseBroadcastingRobotLocations() {
+        return new MapLocation[0];
+    }
+
+    // Movement
+
+    @Override
+    public boolean hasMoved() {
+        return world.hasMoved;
+    }
+
+    @Override
+    public boolean hasAttacked() {
+        return world.hasAttacked;
+    }
+
+    @Override
+    public boolean isBuildReady() {
+        return false;
+    }
+
+    @Override
+    public int getBuildCooldownTurns() {
+        return 10;
+    }
+
+    @Override
+    public boolean canMove(Direction dir) {
+        return canMove(dir, world.type.strideRadius);
+    }
+
+    @Override
+    public boolean canMove(Direction dir, float distance) {
+        return canMove(world.location.add(dir, distance));
+    }
+
+    @Override
+    public boolean canMove(MapLocation center) {
+        return !world.hasMoved && world.location.isWithinDistance(center, world.type.strideRadius + 0.0001f) &&
+                world.onTheMap(center, world.type.bodyRadius) && !world.isCircleOccupied(center, world.type.bodyRadius, false);
+    }
+
+    @Override
+    public void move(Direction dir) throws GameActionException {
+        move(world.location.add(dir, world.type.strideRadius));
+    }
+
+    @Override
+    public void move(Direction dir, float distance) throws GameActionException {
+        move(world.location.add(dir, distance));
+    }
+
+    @Override
+    public void move(MapLocation center) throws GameActionException {
+        if (!canMove(center)) throw new GameActionException(GameActionExceptionType.CANT_MOVE_THERE, "Can't move to " + center);
+        world.location = center;
+        world.hasMoved = true;
+    }
+
+    // Attacking
+
+    private void attack() throws GameActionException {
+        if (world.hasAttacked) throw cantDoThat("Already attacked this round");
+        world.hasAttacked = true;
+        actions++;
+    }
+
+    private boolean canFire(int bullets) {
+        return !world.hasAttacked && world.type.canAttack() && world.type != RobotType.LUMBERJACK && world.teamBullets >= bullets * world.type.attackPower;
+    }
+
+    @Override
+    public boolean canStrike() {
+        return !world.hasAttacked && world.type == RobotType.LUMBERJACK;
+    }
+
+    @Override
+    public void strike() throws GameActionException {
+        attack();
+    }
+
+    @Override
+    public boolean canFireSingleShot() {
+        return canFire(1);
+    }
+
+    @Override
+    public boolean canFireTriadShot() {
+        return canFire(3);
+    }
+
+    @Override
+    public boolean canFirePentadShot() {
+        return canFire(5);
+    }
+
+    @Override
+    public void fireSingleShot(Direction dir) throws GameActionException {
+        attack();
+    }
+
+    @Override
+    public void fireTriadShot(Direction dir) throws GameActionException {
+        attack();
+    }
+
+    @Override
+    public void firePentadShot(Direction dir) throws GameActionException {
+        attack();
+    }
+
+    // Trees
+
+    private boolean canInteractWith(TreeInfo tree) {
+        return tree != null && world.location.isWithinDistance(tree.location, world.type.bodyRadius + tree.radius + GameConstants.INTERACTION_DIST_FROM_EDGE);
+    }
+
+    private TreeInfo treeWithID(int id) {
+        for (TreeInfo tree : world.trees) {
+            if (tree.ID == id) return tree;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean canInteractWithTree(MapLocation loc) {
+        return canInteractWith(senseTreeAtLocation(loc));
+    }
+
+    @Override
+    public boolean canInteractWithTree(int id) {
+        return canInteractWith(treeWithID(id));
+    }
+
+    @Override
+    public boolean canChop(MapLocation loc) {
+        return canStrike() && canInteractWithTree(loc);
+    }
+
+    @Override
+    public boolean canChop(int id) {
+        return canStrike() && canInteractWithTree(id);
+    }
+
+    @Override
+    public void chop(MapLocation loc) throws GameActionException {
+        if (!canChop(loc)) throw cantDoThat("Can't chop at " + loc);
+        attack();
+    }
+
+    @Override
+    public void chop(int id) throws GameActionException {
+        if (!canChop(id)) throw cantDoThat("Can't chop tree " + id);
+        attack();
+    }
+
+    @Override
+    public boolean canShake(MapLocation loc) {
+        return false;
+    }
+
+    @Override
+    public boolean canShake(int id) {
+        return false;
+    }
+
+    @Override
+    public boolean canShake() {
+        return false;
+    }
+
+    @Override
+    public void shake(MapLocation loc) throws GameActionException {
+        throw cantDoThat("Shaking is not simulated");
+    }
+
+    @Override
+    public void shake(int id) throws GameActionException {
+        throw cantDoThat("Shaking is not simulated");
+    }
+
+    @Override
+    public boolean canWater(MapLocation loc) {
+        return false;
+    }
+
+    @Override
+    public boolean canWater(int id) {
+        return false;
+    }
+
+    @Override
+    public boolean canWater() {
+        return false;
+    }
+
+    @Override
+    public void water(MapLocation loc) throws GameActionException {
+        throw cantDoThat("Watering is not simulated");
+    }
+
+    @Override
+    public void water(int id) throws GameActionException {
+        throw cantDoThat("Watering is not simulated");
+    }
+
+    // Broadcasting
+
+    @Override
+    public void broadcast(int channel, int data) throws GameActionException {
+        checkChannel(channel);
+        world.broadcast[channel] = data;
+    }
+
+    @Override
+    public int readBroadcast(int channel) throws GameActionException {
+        checkChannel(channel);
+        return world.broadcast[channel];
+    }
+
+    @Override
+    public void broadcastBoolean(int channel, boolean data) throws GameActionException {
+        broadcast(channel, data ? 1 : 0);
+    }
+
+    @Override
+    public boolean readBroadcastBoolean(int channel) throws GameActionException {
+        return readBroadcast(channel) != 0;
+    }
+
+    @Override
+    public void broadcastInt(int channel, int data) throws GameActionException {
+        broadcast(channel, data);
+    }
+
+    @Override
+    public int readBroadcastInt(int channel) throws GameActionException {
+        return readBroadcast(channel);
+    }
+
+    @Override
+    public void broadcastFloat(int channel, float data) throws GameActionException {
+        broadcast(channel, Float.floatToIntBits(data));
+    }
+
+    @Override
+    public float readBroadcastFloat(int channel) throws GameActionException {
+        return Float.intBitsToFloat(readBroadcast(channel));
+    }
+
+    // Building
+
+    @Override
+    public boolean hasRobotBuildRequirements(RobotType type) {
+        return false;
+    }
+
+    @Override
+    public boolean hasTreeBuildRequirements() {
+        return false;
+    }
+
+    @Override
+    public boolean canBuildRobot(RobotType type, Direction dir) {
+        return false;
+    }
+
+    @Override
+    public void buildRobot(RobotType type, Direction dir) throws GameActionException {
+        throw cantDoThat("Building is not simulated");
+    }
+
+    @Override
+    public boolean canPlantTree(Direction dir) {
+        return false;
+    }
+
+    @Override
+    public void plantTree(Direction dir) throws GameActionException {
+        throw cantDoThat("Planting is not simulated");
+    }
+
+    @Override
+    public boolean canHireGardener(Direction dir) {
+        return false;
+    }
+
+    @Override
+    public void hireGardener(Direction dir) throws GameActionException {
+        throw cantDoThat("Hiring is not simulated");
+    }
+
+    // Other
+
+    @Override
+    public float getVictoryPointCost() {
+        return 7.5f + world.round * 12.5f / world.roundLimit;
+    }
+
+    @Override
+    public void donate(float bullets) throws GameActionException {
+        if (bullets < 0 || bullets > world.teamBullets) throw cantDoThat("Can't donate " + bullets + " bullets");
+        world.teamBullets -= bullets;
+        world.victoryPoints += (int)(bullets / getVictoryPointCost());
+        actions++;
+    }
+
+    @Override
+    public void disintegrate() {
+    }
+
+    @Override
+    public void resign() {
+    }
+
+    @Override
+    public void setIndicatorDot(MapLocation loc, int red, int green, int blue) {
+    }
+
+    @Override
+    public void setIndicatorLine(MapLocation start, MapLocation end, int red, int green, int blue) {
+    }
+
+    @Override
+    public void setTeamMemory(int index, long value) {
+        teamMemory[index] = value;
+    }
+
+    @Override
+    public void setTeamMemory(int index, long value, long mask) {
+        teamMemory[index] = (teamMemory[index] & ~mask) | (value & mask);
+    }
+
+    @Override
+    public long[] getTeamMemory() {
+        return teamMemory.clone();
+    }
+
+    @Override
+    public long getControlBits() {
+        return 0;
+    }
+}
@@ -0,0 +1,222 @@
+package bot;
+
+import battlecode.common.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory world used to run bot code without the engine.
+ * <p>
+ * Holds the state as seen by a single robot: the circles of nearby trees and robots, bullets in flight,
+ * the broadcast array and the map bounds. Scenarios are loaded from snapshots printed by
+ * {@link Robot#debug_printSnapshot()} or written by hand in the same format, one record per line:
+ * <pre>
+ * robot   type team id x y health round roundLimit
+ * economy teamBullets victoryPoints treeCount robotCount
+ * edges   maxX maxY minX minY
+ * archon  team x y
+ * tree    id team x y radius health containedBullets containedRobot|-
+ * unit    id team type x y health
+ * bullet  id x y directionRadians speed damage
+ * channel index value
+ * </pre>
+ * Anything up to and including "SNAPSHOT id " on a line is ignored, so the raw output of a match can be used directly.
+ * Blank lines and lines starting with # are skipped.
+ */
+class OfflineWorld {
+    RobotType type = RobotType.SOLDIER;
+    Team team = Team.A;
+    int id = 1;
+    MapLocation location = new MapLocation(50, 50);
+    float health = RobotType.SOLDIER.maxHealth;
+    int round = 1;
+    int roundLimit = GameConstants.GAME_DEFAULT_ROUNDS;
+    float teamBullets = GameConstants.BULLETS_INITIAL_AMOUNT;
+    int victoryPoints = 0;
+    int treeCount = 0;
+    int robotCount = 1;
+    float maxX = 1000, maxY = 1000, minX = 0, minY = 0;
+
+    final List<MapLocation> archonsA = new ArrayList<>();
+    final List<MapLocation> archonsB = new ArrayList<>();
+    final List<TreeInfo> trees = new ArrayList<>();
+    final List<RobotInfo> robots = new ArrayList<>();
+    final List<BulletInfo> bullets = new ArrayList<>();
+    final int[] broadcast = new int[GameConstants.BROADCAST_MAX_CHANNELS];
+
+    boolean hasMoved = false;
+    boolean hasAttacked = false;
+
+    private OfflineWorld initialState;
+
+    static OfflineWorld load(String path) throws IOException {
+        return parse(Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8));
+    }
+
+    static OfflineWorld parse(List<String> lines) {
+        OfflineWorld world = new OfflineWorld();
+        for (String line : lines) {
+            int snapshot = line.indexOf("SNAPSHOT ");
+            if (snapshot != -1) {
+                line = line.substring(snapshot + "SNAPSHOT ".length()).trim();
+                // Skip the robot id
+                line = line.substring(line.indexOf(' ') + 1);
+            }
+
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] t = line.split("\\s+");
+            switch (t[0]) {
+                case "robot":
+                    world.type = RobotType.valueOf(t[1]);
+                    world.team = Team.valueOf(t[2]);
+                    world.id = Integer.parseInt(t[3]);
+                    world.location = new MapLocation(Float.parseFloat(t[4]), Float.parseFloat(t[5]));
+                    world.health = Float.parseFloat(t[6]);
+                    world.round = Integer.parseInt(t[7]);
+                    world.roundLimit = Integer.parseInt(t[8]);
+                    break;
+                case "economy":
+                    world.teamBullets = Float.parseFloat(t[1]);
+                    world.victoryPoints = Integer.parseInt(t[2]);
+                    world.treeCount = Integer.parseInt(t[3]);
+                    world.robotCount = Integer.parseInt(t[4]);
+                    break;
+                case "edges":
+                    world.maxX = Float.parseFloat(t[1]);
+                    world.maxY = Float.parseFloat(t[2]);
+                    world.minX = Float.parseFloat(t[3]);
+                    world.minY = Float.parseFloat(t[4]);
+                    break;
+                case "archon":
+                    (Team.valueOf(t[1]) == Team.A ? world.archonsA : world.archonsB).add(new MapLocation(Float.parseFloat(t[2]), Float.parseFloat(t[3])));
+                    break;
+                case "tree":
+                    world.trees.add(new TreeInfo(Integer.parseInt(t[1]), Team.valueOf(t[2]), new MapLocation(Float.parseFloat(t[3]), Float.parseFloat(t[4])),
+                            Float.parseFloat(t[5]), Float.parseFloat(t[6]), Integer.parseInt(t[7]), t[8].equals("-") ? null : RobotType.valueOf(t[8])));
+                    break;
+                case "unit":
+                    world.robots.add(new RobotInfo(Integer.parseInt(t[1]), Team.valueOf(t[2]), RobotType.valueOf(t[3]),
+                            new MapLocation(Float.parseFloat(t[4]), Float.parseFloat(t[5])), Float.parseFloat(t[6]), 0, 0));
+                    break;
+                case "bullet":
+                    world.bullets.add(new BulletInfo(Integer.parseInt(t[1]), new MapLocation(Float.parseFloat(t[2]), Float.parseFloat(t[3])),
+                            new Direction(Float.parseFloat(t[4])), Float.parseFloat(t[5]), Float.parseFloat(t[6])));
+                    break;
+                case "channel":
+                    world.broadcast[Integer.parseInt(t[1])] = Integer.parseInt(t[2]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown snapshot record: " + line);
+            }
+        }
+
+        world.saveInitialState();
+        return world;
+    }
+
+    /**
+     * Makes {@link #reset()} restore the world to its current state
+     */
+    void saveInitialState() {
+        initialState = copy();
+    }
+
+    private OfflineWorld copy() {
+        OfflineWorld world = new OfflineWorld();
+        world.copyFrom(this);
+        return world;
+    }
+
+    private void copyFrom(OfflineWorld other) {
+        type = other.type;
+        team = other.team;
+        id = other.id;
+        location = other.location;
+        health = other.health;
+        round = other.round;
+        roundLimit = other.roundLimit;
+        teamBullets = other.teamBullets;
+        victoryPoints = other.victoryPoints;
+        treeCount = other.treeCount;
+        robotCount = other.robotCount;
+        maxX = other.maxX;
+        maxY = other.maxY;
+        minX = other.minX;
+        minY = other.minY;
+        archonsA.clear();
+        archonsA.addAll(other.archonsA);
+        archonsB.clear();
+        archonsB.addAll(other.archonsB);
+        trees.clear();
+        trees.addAll(other.trees);
+        robots.clear();
+        robots.addAll(other.robots);
+        bullets.clear();
+        bullets.addAll(other.bullets);
+        System.arraycopy(other.broadcast, 0, broadcast, 0, broadcast.length);
+        hasMoved = other.hasMoved;
+        hasAttacked = other.hasAttacked;
+    }
+
+    /**
+     * Restores the world to the state it was loaded in, or the state at the last call to {@link #saveInitialState()}
+     */
+    void reset() {
+        copyFrom(initialState);
+    }
+
+    /**
+     * Advances the world by one round. Bullets move along their paths, nothing else moves.
+     */
+    void nextRound() {
+        round++;
+        hasMoved = false;
+        hasAttacked = false;
+        for (int i = 0; i < bullets.size(); i++) {
+            BulletInfo bullet = bullets.get(i);
+            bullets.set(i, new BulletInfo(bullet.ID, bullet.location.add(bullet.dir, bullet.speed), bullet.dir, bullet.speed, bullet.damage));
+        }
+    }
+
+    /**
+     * Creates a controller for the robot in this world and sets up the bot code to use it.
+     * Robot.init is called so that all shared state is initialized as it would be at the start of the robot's life.
+     */
+    OfflineRobotController install() throws GameActionException {
+        OfflineRobotController rc = new OfflineRobotController(this);
+        Clock.bytecodeNum = 0;
+        Clock.bytecodeLimit = type.bytecodeLimit;
+        Clock.onYield = this::nextRound;
+        Robot.init(rc);
+        return rc;
+    }
+
+    boolean onTheMap(MapLocation loc, float radius) {
+        return loc.x - radius >= minX && loc.x + radius <= maxX && loc.y - radius >= minY && loc.y + radius <= maxY;
+    }
+
+    /**
+     * True if the circle overlaps any tree or robot. The robot itself is only considered if includeSelf is true.
+     */
+    boolean isCircleOccupied(MapLocation center, float radius, boolean includeSelf) {
+        for (TreeInfo tree : trees) {
+            if (tree.location.isWithinDistance(center, tree.radius + radius)) return true;
+        }
+        for (RobotInfo robot : robots) {
+            if (robot.location.isWithinDistance(center, robot.type.bodyRadius + radius)) return true;
+        }
+        return includeSelf && location.isWithinDistance(center, type.bodyRadius + radius);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + id + " at " + location + " in round " + round + " with " + trees.size() + " trees, " + robots.size() + " robots and " + bullets.size() + " bullets";
+    }
+}
@@ -0,0 +1,149 @@
+package bot;
+
+import battlecode.common.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OfflineWorldTest {
+
+	private OfflineWorld world;
+	private OfflineRobotController rc;
+
+	@Before
+	public void setUp() throws Exception {
+		world = OfflineWorld.load("test/scenarios/soldier-under-fire.snapshot");
+		rc = world.install();
+	}
+
+	@Test
+	public void testSensing() {
+		assertEquals(12, rc.senseNearbyBullets().length);
+		assertEquals(2, rc.senseNearbyRobots(-1, Team.B).length);
+		assertEquals(202, rc.senseNearbyRobots(-1, Team.A)[0].ID);
+		assertTrue(rc.isCircleOccupied(rc.getLocation(), 0.5f));
+		assertFalse(rc.isCircleOccupiedExceptByThisRobot(rc.getLocation(), 0.5f));
+	}
+
+	@Test
+	public void testMoveToAvoidBullets() throws GameActionException {
+		MapLocation moveTo = Robot.moveToAvoidBullets(new MapLocation(80, 80), rc.senseNearbyBullets(), rc.senseNearbyRobots());
+		assertNotNull(moveTo);
+		assertTrue(rc.canMove(moveTo));
+	}
+
+	@Test
+	public void testChunkJob() throws GameActionException {
+		// The first call picks a chunk, the second one explores it
+		Robot.broadcastExploration();
+		Robot.broadcastExploration();
+
+		boolean anyExplored = false;
+		for (int i = 0; i < 625; i++) {
+			anyExplored |= (world.broadcast[Robot.PATHFINDING + i] & (1 << 31)) != 0;
+		}
+		assertTrue(anyExplored);
+	}
+
+	@Test
+	public void testChunkScanMatchesNodeSensing() throws GameActionException {
+		world = RandomWorlds.create(RobotType.SCOUT, 0, 0, 40, 60, 3);
+		rc = world.install();
+		Clock.bytecodeNum = 0;
+		Clock.bytecodeLimit = Integer.MAX_VALUE;
+		for (int i = 0; i < 20; i++) Robot.broadcastExploration();
+
+		int explored = 0;
+		for (int i = 0; i < 625; i++) {
+			int chunk = world.broadcast[Robot.PATHFINDING + i];
+			// The trees of random worlds are not symmetric
+			if (chunk >= 0 || (chunk & Robot.CHUNK_INFERRED) != 0) continue;
+			explored++;
+
+			// Same result as sensing around the center of every node
+			for (int bit = 0; bit < 16; bit++) {
+				MapLocation center = Robot.nodePosition(i % 25 * 4 + bit % 4, i / 25 * 4 + bit / 4);
+				float radius = Robot.PATHFINDING_NODE_SIZE * 0.5f;
+				boolean blocked = !Robot.onMap(center, radius) || rc.senseNearbyTrees(center, radius, null).length > 0;
+				assertEquals("chunk " + i + " node " + bit, blocked, (chunk & (1 << bit)) != 0);
+			}
+		}
+		assertTrue(explored >= 3);
+	}
+
+	@Test
+	public void testSkipsChunksClaimedByOtherRobots() throws GameActionException {
+		// Another robot has claimed every chunk in this round
+		int claim = rc.getRoundNum() << 15 | (rc.getID() + 1);
+		for (int i = 0; i < 625; i++) world.broadcast[Robot.PATHFINDING_CLAIMS + i] = claim;
+		Robot.broadcastExploration();
+		Robot.broadcastExploration();
+		assertFalse(Robot.hasChunkJob());
+
+		// Only the chunk the robot is in is left
+		int node = Robot.snapToNode(rc.getLocation());
+		int chunk = (node / 100 / 4) * 25 + (node % 100) / 4;
+		world.broadcast[Robot.PATHFINDING_CLAIMS + chunk] = 0;
+		Robot.broadcastExploration();
+		assertTrue(Robot.hasChunkJob());
+		assertEquals(rc.getRoundNum() << 15 | rc.getID(), world.broadcast[Robot.PATHFINDING_CLAIMS + chunk]);
+	}
+
+	@Test
+	public void testAgesDoNotWrapAround() {
+		int ages = Robot.stampQuadrants(0, 0xFFFF, 100);
+		assertEquals(0xFFFF, Robot.freshNodes(ages, 150));
+		assertEquals(0, Robot.chunkAge(ages, 150));
+		assertEquals(0, Robot.freshNodes(ages, 1700));
+		assertEquals(15, Robot.chunkAge(ages, 1700));
+		assertEquals(15, Robot.chunkAge(Robot.stampQuadrants(0, 0x0033, 100), 150));
+	}
+
+	@Test
+	public void testCombinesPartialScansPerQuadrant() throws GameActionException {
+		world = RandomWorlds.create(RobotType.SCOUT, 0, 0, 40, 60, 3);
+		rc = world.install();
+		Clock.bytecodeNum = 0;
+		Clock.bytecodeLimit = Integer.MAX_VALUE;
+		int round = rc.getRoundNum();
+
+		// A chunk diagonally next to the robot's own chunk, only its first quadrant can be sensed completely
+		int node = Robot.snapToNode(rc.getLocation());
+		int chunk = (node / 100 / 4) * 25 + (node % 100) / 4 + 26;
+		for (int i = 0; i < 625; i++) world.broadcast[Robot.PATHFINDING_CLAIMS + i] = i == chunk ? 0 : round << 15 | (rc.getID() + 1);
+
+		// Another robot scanned the other quadrants recently
+		int previousAges = Robot.stampQuadrants(0, 0xFFCC, round - 50);
+		world.broadcast[Robot.PATHFINDING + chunk] = 0xFFCC;
+		world.broadcast[Robot.PATHFINDING_AGES + chunk] = previousAges;
+
+		Robot.broadcastExploration();
+		Robot.broadcastExploration();
+		assertFalse(Robot.hasChunkJob());
+
+		int info = world.broadcast[Robot.PATHFINDING + chunk];
+		assertTrue(info < 0);
+		// Nodes of the other quadrants are written as well where they could be sensed, the rest are kept
+		int sensed = 0x0377;
+		assertEquals(0xFFCC & ~sensed, info & 0xFFCC & ~sensed);
+		for (int bit = 0; bit < 16; bit++) {
+			if ((sensed & (1 << bit)) == 0) continue;
+			MapLocation center = Robot.nodePosition(chunk % 25 * 4 + bit % 4, chunk / 25 * 4 + bit / 4);
+			boolean blocked = rc.senseNearbyTrees(center, Robot.PATHFINDING_NODE_SIZE * 0.5f, null).length > 0;
+			assertEquals("node " + bit, blocked, (info & (1 << bit)) != 0);
+		}
+		// Only the first quadrant gets a new stamp
+		assertEquals((previousAges & ~0xFF) | (round / Robot.AGE_ROUNDS + 1), world.broadcast[Robot.PATHFINDING_AGES + chunk]);
+	}
+
+	@Test
+	public void testReset() throws GameActionException {
+		rc.move(rc.getLocation().add(Direction.getNorth(), 1f));
+		Clock.yield();
+		world.reset();
+		assertEquals(new MapLocation(50, 50), rc.getLocation());
+		assertEquals(400, rc.getRoundNum());
+		assertFalse(rc.hasMoved());
+	}
+}
@@ -0,0 +1,46 @@
+package bot;
+
+import battlecode.common.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OverrunsTest {
+
+	private OfflineWorld world;
+
+	@Before
+	public void setUp() throws Exception {
+		world = OfflineWorld.load("test/scenarios/soldier-under-fire.snapshot");
+		world.install();
+		Robot.onStartOfTick();
+	}
+
+	private int counter(int subsystem) {
+		return world.broadcast[Robot.OVERRUN_COUNTERS + RobotType.SOLDIER.ordinal() * Overruns.SUBSYSTEMS + subsystem];
+	}
+
+	@Test
+	public void testOverrunInSubsystem() throws GameActionException {
+		Overruns.begin(Overruns.MOVE_TO_AVOID_BULLETS);
+		// Simulates running out of bytecodes
+		Clock.yield();
+		Overruns.end();
+		Overruns.endOfTurn();
+
+		assertEquals(1, counter(Overruns.MOVE_TO_AVOID_BULLETS));
+		assertEquals(0, counter(Overruns.OTHER));
+	}
+
+	@Test
+	public void testOverrunOutsideSubsystem() throws GameActionException {
+		Overruns.begin(Overruns.MOVE_TO_AVOID_BULLETS);
+		Overruns.end();
+		Clock.yield();
+		Overruns.endOfTurn();
+
+		assertEquals(0, counter(Overruns.MOVE_TO_AVOID_BULLETS));
+		assertEquals(1, counter(Overruns.OTHER));
+	}
+}
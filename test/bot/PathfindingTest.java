@@ -0,0 +1,305 @@
+package bot;
+
+import battlecode.common.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PathfindingTest {
+
+	private OfflineWorld world;
+	private Archon archon;
+
+	@Before
+	public void setUp() throws Exception {
+		world = RandomWorlds.create(RobotType.ARCHON, 0, 0, 0, 60, 1);
+		world.install();
+		RandomWorlds.exploreMap(world, 100, 1);
+		archon = new Archon();
+
+		Clock.bytecodeNum = 0;
+		Clock.bytecodeLimit = Integer.MAX_VALUE;
+		// Clear the search state left by other tests
+		archon.allocatePathfinding();
+		archon.pathfinding();
+	}
+
+	private static int[] costs() {
+		int[] costs = new int[Robot.PATHFINDING_WORLD_WIDTH * Robot.PATHFINDING_WORLD_WIDTH];
+		for (int i = 0; i < costs.length; i++) {
+			costs[i] = Archon.pathfindingCost(i);
+		}
+		return costs;
+	}
+
+	private void assertSameAsFullSearch() throws GameActionException {
+		int[] repaired = costs();
+
+		// The broadcast results must match the repaired search
+		int chunksPerRow = Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE;
+		for (int i = 0; i < chunksPerRow * chunksPerRow; i++) {
+			MapLocation center = Robot.explorationOrigin.translate((i % chunksPerRow + 0.5f) * Robot.PATHFINDING_CHUNK_SIZE * Robot.PATHFINDING_NODE_SIZE, (i / chunksPerRow + 0.5f) * Robot.PATHFINDING_CHUNK_SIZE * Robot.PATHFINDING_NODE_SIZE);
+			if (Robot.onMap(center, -Robot.PATHFINDING_CHUNK_SIZE * Robot.PATHFINDING_NODE_SIZE * 0.5f)) {
+				assertEquals("chunk " + i, Archon.pathfindingResultWord(i), world.broadcast[Robot.PATHFINDING_RESULT_TO_ENEMY_ARCHON + i]);
+				int diagonals = world.broadcast[Robot.PATHFINDING_RESULT_DIAGONALS + i / 2] >>> (16 * (i % 2)) & 0xFFFF;
+				assertEquals("chunk " + i, Archon.resultDiagonals, diagonals);
+			}
+		}
+
+		archon.startFullSearch();
+		archon.pathfinding();
+		assertArrayEquals(costs(), repaired);
+	}
+
+	@Test
+	public void testRepairsNewWall() throws GameActionException {
+		RandomWorlds.addWall(world, 1, 3);
+		archon.pathfinding();
+		assertSameAsFullSearch();
+	}
+
+	@Test
+	public void testRepairsRemovedWall() throws GameActionException {
+		RandomWorlds.addWall(world, 1, 3);
+		archon.pathfinding();
+
+		// Clear every blocked node again
+		for (int i = 0; i < 625; i++) {
+			int chunk = world.broadcast[Robot.PATHFINDING + i];
+			if ((chunk & 0xFFFF) != 0) Robot.broadcastChunk(i, chunk & ~0xFFFF);
+		}
+		archon.pathfinding();
+		assertSameAsFullSearch();
+	}
+
+	@Test
+	public void testIgnoresChangesThatDoNotAffectNodes() throws GameActionException {
+		int[] before = costs();
+		int count = world.broadcast[Robot.PATHFINDING_CHANGE_COUNT];
+
+		// Only the number of nodes calculated changes
+		int node = Robot.snapToNode(world.location);
+		int index = (node / Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE) * 25 + (node % Robot.PATHFINDING_WORLD_WIDTH) / Robot.PATHFINDING_CHUNK_SIZE;
+		Robot.broadcastChunk(index, world.broadcast[Robot.PATHFINDING + index] ^ (1 << 16));
+		assertEquals(count, world.broadcast[Robot.PATHFINDING_CHANGE_COUNT]);
+
+		archon.pathfinding();
+		assertArrayEquals(before, costs());
+	}
+
+	@Test
+	public void testRepairsReservedNodes() throws GameActionException {
+		int node = Robot.snapToNode(world.location);
+		Robot.reserveNode(node % Robot.PATHFINDING_WORLD_WIDTH, node / Robot.PATHFINDING_WORLD_WIDTH);
+		Robot.reserveNode(node % Robot.PATHFINDING_WORLD_WIDTH + 1, node / Robot.PATHFINDING_WORLD_WIDTH);
+		archon.pathfinding();
+		assertEquals(Archon.COST_RESERVED, Archon.nodeWeight(node));
+		assertSameAsFullSearch();
+	}
+
+	@Test
+	public void testRepairsDangerAndItsDecay() throws GameActionException {
+		int node = Robot.snapToNode(world.location);
+		Robot.addDanger(world.location, 8);
+		Robot.addDanger(world.location, 4);
+		Robot.broadcastDanger();
+		archon.pathfinding();
+		assertEquals(Archon.COST_FREE + 12 * Archon.COST_DANGER, Archon.nodeWeight(node));
+		assertSameAsFullSearch();
+
+		// Another robot seeing fewer enemies does not raise it further
+		Robot.addDanger(world.location, 4);
+		Robot.broadcastDanger();
+		archon.pathfinding();
+		assertEquals(Archon.COST_FREE + 12 * Archon.COST_DANGER, Archon.nodeWeight(node));
+
+		world.round += 5 * Robot.DANGER_DECAY_ROUNDS;
+		archon.pathfinding();
+		assertEquals(Archon.COST_FREE + 7 * Archon.COST_DANGER, Archon.nodeWeight(node));
+		assertSameAsFullSearch();
+	}
+
+	@Test
+	public void testCostsAreShortestPaths() throws GameActionException {
+		RandomWorlds.addWall(world, 2, 5);
+		archon.pathfinding();
+
+		int reached = 0;
+		for (int node = 0; node < Robot.PATHFINDING_WORLD_WIDTH * Robot.PATHFINDING_WORLD_WIDTH; node++) {
+			int cost = Archon.pathfindingCost(node);
+			if (cost <= 0) continue;
+
+			// No neighbour gives a cheaper path, and at least one gives exactly this one
+			int best = Integer.MAX_VALUE;
+			for (int offset : new int[] { 1, -1, Robot.PATHFINDING_WORLD_WIDTH, -Robot.PATHFINDING_WORLD_WIDTH }) {
+				int neighbourCost = Archon.pathfindingCost(node + offset);
+				if (neighbourCost >= 0) best = Math.min(best, neighbourCost + Archon.nodeWeight(node));
+			}
+			assertEquals("node " + node, best, cost);
+			reached++;
+		}
+		assertTrue(reached > 100);
+	}
+
+	/** Number of steps along the broadcast result from the node to a seed, or -1 if the path does not end */
+	private int stepsToSeed(int node, int seed) {
+		int width = Robot.PATHFINDING_WORLD_WIDTH;
+		int[] offsets = { 1, width, -1, -width };
+		for (int steps = 0; steps < width * width; steps++) {
+			if (node == seed) return steps;
+			int chunkIndex = (node / width / Robot.PATHFINDING_CHUNK_SIZE) * (width / Robot.PATHFINDING_CHUNK_SIZE) + (node % width) / Robot.PATHFINDING_CHUNK_SIZE;
+			int shift = 2 * ((node / width) % Robot.PATHFINDING_CHUNK_SIZE * Robot.PATHFINDING_CHUNK_SIZE + (node % width) % Robot.PATHFINDING_CHUNK_SIZE);
+			int dir = (world.broadcast[Robot.PATHFINDING_RESULT_TO_ENEMY_ARCHON + chunkIndex] >>> shift) & 3;
+			node -= offsets[dir];
+		}
+		return -1;
+	}
+
+	private void runWaveSearch() throws GameActionException {
+		assertTrue(archon.startWaveSearch());
+		assertTrue(archon.expandWaves());
+		assertTrue(archon.broadcastWaveResult());
+	}
+
+	@Test
+	public void testWaveSearchReachesEveryNode() throws GameActionException {
+		RandomWorlds.addWall(world, 2, 5);
+		archon.pathfinding();
+		runWaveSearch();
+
+		int seed = Robot.snapToNode(Robot.initialArchonLocations[0]);
+		for (int node = 0; node < Robot.PATHFINDING_WORLD_WIDTH * Robot.PATHFINDING_WORLD_WIDTH; node++) {
+			if (Archon.pathfindingCost(node) >= 0) assertTrue("node " + node, stepsToSeed(node, seed) >= 0);
+		}
+	}
+
+	@Test
+	public void testWaveSearchFindsFewestSteps() throws GameActionException {
+		// Without any blocked nodes the fewest steps is the manhattan distance
+		for (int i = 0; i < 625; i++) {
+			int chunk = world.broadcast[Robot.PATHFINDING + i];
+			if ((chunk & 0xFFFF) != 0) Robot.broadcastChunk(i, chunk & ~0xFFFF);
+		}
+		archon.pathfinding();
+		runWaveSearch();
+
+		int width = Robot.PATHFINDING_WORLD_WIDTH;
+		int seed = Robot.snapToNode(Robot.initialArchonLocations[0]);
+		int reached = 0;
+		for (int node = 0; node < width * width; node++) {
+			if (Archon.pathfindingCost(node) < 0) continue;
+
+			assertEquals("node " + node, Math.abs(node % width - seed % width) + Math.abs(node / width - seed / width), stepsToSeed(node, seed));
+			reached++;
+		}
+		assertTrue(reached > 100);
+	}
+
+	@Test
+	public void testMaintainsPathToOurArchons() throws GameActionException {
+		int home = Robot.snapToNode(Robot.ourInitialArchonLocations[0]);
+		MapLocation loc = world.location;
+		for (int steps = 0; Robot.snapToNode(loc) != home; steps++) {
+			assertTrue(steps < 200);
+			loc = Robot.nextPointOnPathToOurArchons(loc);
+			assertNotNull(loc);
+		}
+	}
+
+	@Test
+	public void testMaintainsPathToFrontier() throws GameActionException {
+		// Forget that one chunk has been explored
+		int index = chunkIndex(Robot.snapToNode(world.location.translate(10, 0)));
+		Robot.broadcastChunk(index, world.broadcast[Robot.PATHFINDING + index] & 0xFFFF);
+		world.round += 60;
+		archon.pathfinding();
+
+		MapLocation loc = world.location;
+		for (int steps = 0; world.broadcast[Robot.PATHFINDING + chunkIndex(Robot.snapToNode(loc))] < 0; steps++) {
+			assertTrue(steps < 20);
+			loc = Robot.nextPointOnPathToFrontier(loc);
+			assertNotNull(loc);
+		}
+	}
+
+	@Test
+	public void testRefreshesEveryFieldWithArchonBudget() throws GameActionException {
+		// A target for the hot target field
+		int spotted = world.round;
+		world.broadcast[Robot.TARGET_OFFSET] = spotted;
+		Robot.rc.broadcastFloat(Robot.TARGET_OFFSET + 1, 1000f);
+		Robot.broadcast(Robot.TARGET_OFFSET + 2, world.location.translate(10, 10));
+		for (int field = FlowFields.OUR_ARCHONS; field < FlowFields.FIELD_COUNT; field++) {
+			FlowFields.averageCost[field] = 300000;
+		}
+		FlowFields.reset();
+		// Forget the spare bytecodes measured without a limit
+		FlowFields.spareBytecodes = 0;
+
+		Clock.bytecodeLimit = RobotType.ARCHON.bytecodeLimit;
+		for (int round = 0; round < 200; round++) {
+			world.nextRound();
+			// The rest of the archon's turn comes first
+			Clock.bytecodeNum = 6000;
+			archon.pathfinding();
+		}
+		for (int field = FlowFields.OUR_ARCHONS; field < FlowFields.FIELD_COUNT; field++) {
+			assertTrue("field " + field, world.broadcast[Robot.PATHFINDING_FIELD_ROUNDS + field] > spotted);
+		}
+	}
+
+	private static int chunkIndex(int node) {
+		return (node / Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE) * 25 + (node % Robot.PATHFINDING_WORLD_WIDTH) / Robot.PATHFINDING_CHUNK_SIZE;
+	}
+
+	@Test
+	public void testTakesDiagonalSteps() throws GameActionException {
+		// Without any blocked nodes the fewest steps is the largest distance along either axis
+		for (int i = 0; i < 625; i++) {
+			int chunk = world.broadcast[Robot.PATHFINDING + i];
+			if ((chunk & 0xFFFF) != 0) Robot.broadcastChunk(i, chunk & ~0xFFFF);
+		}
+		archon.pathfinding();
+
+		int width = Robot.PATHFINDING_WORLD_WIDTH;
+		int seed = Robot.snapToNode(Robot.initialArchonLocations[0]);
+		for (int i = 0; i < 8; i++) {
+			MapLocation loc = world.location.add(i * (float)Math.PI / 4, 5f * i);
+			int node = Robot.snapToNode(loc);
+			int expected = Math.max(Math.abs(node % width - seed % width), Math.abs(node / width - seed / width));
+			int steps = 0;
+			while (Robot.snapToNode(loc) != seed) {
+				assertTrue(steps++ <= expected);
+				loc = Robot.nextPointOnPathToEnemyArchon(loc);
+			}
+			assertEquals(expected, steps);
+		}
+	}
+
+	@Test
+	public void testBroadcastsDiagonalsAfterResult() throws GameActionException {
+		archon.startFullSearch();
+		archon.expand();
+		assertTrue(archon.broadcastPathfindingResult());
+
+		// Soldiers only move along the grid until the diagonals have been worked out
+		for (int i = 0; i < 313; i++) {
+			assertEquals(0, world.broadcast[Robot.PATHFINDING_RESULT_DIAGONALS + i]);
+		}
+
+		assertTrue(archon.broadcastPathfindingDiagonals());
+		assertSameAsFullSearch();
+	}
+
+	@Test
+	public void testCorridorLeadsToEnemyArchon() throws GameActionException {
+		int seed = Robot.snapToNode(Robot.initialArchonLocations[0]);
+		for (int steps = 0; Robot.snapToNode(world.location) != seed; steps++) {
+			assertTrue(steps < 200);
+			MapLocation target = Corridor.target();
+			assertNotEquals(Robot.snapToNode(world.location), Robot.snapToNode(target));
+			world.location = target;
+		}
+	}
+}
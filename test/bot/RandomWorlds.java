@@ -0,0 +1,110 @@
+package bot;
+
+import battlecode.common.*;
+
+import java.util.Random;
+
+/**
+ * Randomly generated worlds for benchmarks and bytecode measurements.
+ * The same parameters and seed always give the same world.
+ */
+class RandomWorlds {
+
+    /**
+     * World with a robot in the middle of a square map.
+     * Bullets, units and trees are placed within sensor range of the robot, most bullets are aimed roughly at it.
+     */
+    static OfflineWorld create(RobotType type, int bullets, int units, int trees, int mapSize, long seed) {
+        Random random = new Random(seed);
+        OfflineWorld world = new OfflineWorld();
+        world.type = type;
+        world.health = type.maxHealth;
+        world.minX = 0;
+        world.minY = 0;
+        world.maxX = mapSize;
+        world.maxY = mapSize;
+        world.location = new MapLocation(mapSize * 0.5f, mapSize * 0.5f);
+        world.archonsA.add(new MapLocation(mapSize * 0.2f, mapSize * 0.2f));
+        world.archonsB.add(new MapLocation(mapSize * 0.8f, mapSize * 0.8f));
+
+        int id = 100;
+        for (int i = 0; i < trees; i++) {
+            MapLocation loc = randomFreeLocation(world, random, type.sensorRadius, 1f);
+            if (loc != null) world.trees.add(new TreeInfo(id++, Team.NEUTRAL, loc, 1f, 50f, 0, null));
+        }
+
+        RobotType[] types = RobotType.values();
+        for (int i = 0; i < units; i++) {
+            RobotType unitType = types[random.nextInt(types.length)];
+            MapLocation loc = randomFreeLocation(world, random, type.sensorRadius, unitType.bodyRadius);
+            if (loc != null) world.robots.add(new RobotInfo(id++, random.nextBoolean() ? Team.A : Team.B, unitType, loc, unitType.maxHealth, 0, 0));
+        }
+
+        for (int i = 0; i < bullets; i++) {
+            MapLocation loc = world.location.add(random.nextFloat() * 2 * (float)Math.PI, type.bodyRadius + 1f + random.nextFloat() * 6f);
+            Direction dir = loc.directionTo(world.location).rotateLeftDegrees((random.nextFloat() - 0.5f) * 60f);
+            world.bullets.add(new BulletInfo(id++, loc, dir, 2f, 2f));
+        }
+
+        world.saveInitialState();
+        return world;
+    }
+
+    private static MapLocation randomFreeLocation(OfflineWorld world, Random random, float maxDistance, float radius) {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            MapLocation loc = world.location.add(random.nextFloat() * 2 * (float)Math.PI, world.type.bodyRadius + radius + random.nextFloat() * maxDistance);
+            if (world.onTheMap(loc, radius) && !world.isCircleOccupied(loc, radius, true)) return loc;
+        }
+        return null;
+    }
+
+    /**
+     * Fills the pathfinding chunks covering the map as if they had been explored,
+     * with the given number of randomly placed blocked nodes.
+     * Must be called after the world has been installed so that the exploration origin is known.
+     */
+    static void exploreMap(OfflineWorld world, int blockedNodes, long seed) {
+        Random random = new Random(seed);
+        int chunksPerRow = Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE;
+        for (int cy = 0; cy < chunksPerRow; cy++) {
+            for (int cx = 0; cx < chunksPerRow; cx++) {
+                MapLocation center = Robot.explorationOrigin.translate((cx + 0.5f) * Robot.PATHFINDING_CHUNK_SIZE * Robot.PATHFINDING_NODE_SIZE, (cy + 0.5f) * Robot.PATHFINDING_CHUNK_SIZE * Robot.PATHFINDING_NODE_SIZE);
+                if (world.onTheMap(center, 0)) {
+                    //noinspection NumericOverflow
+                    world.broadcast[Robot.PATHFINDING + cy * chunksPerRow + cx] = 1 << 31;
+                }
+            }
+        }
+
+        for (int i = 0; i < blockedNodes; i++) {
+            MapLocation loc = new MapLocation(world.minX + random.nextFloat() * (world.maxX - world.minX), world.minY + random.nextFloat() * (world.maxY - world.minY));
+            int node = Robot.snapToNode(loc);
+            int x = node % Robot.PATHFINDING_WORLD_WIDTH;
+            int y = node / Robot.PATHFINDING_WORLD_WIDTH;
+            int chunk = (y / Robot.PATHFINDING_CHUNK_SIZE) * chunksPerRow + x / Robot.PATHFINDING_CHUNK_SIZE;
+            world.broadcast[Robot.PATHFINDING + chunk] |= 1 << ((y % Robot.PATHFINDING_CHUNK_SIZE) * Robot.PATHFINDING_CHUNK_SIZE + (x % Robot.PATHFINDING_CHUNK_SIZE));
+        }
+
+        Robot.mapEdges0 = world.maxX;
+        Robot.mapEdges1 = world.maxY;
+        Robot.mapEdges2 = world.minX;
+        Robot.mapEdges3 = world.minY;
+        world.saveInitialState();
+    }
+
+    /**
+     * Blocks one row of nodes in the given number of chunks in the middle of the map.
+     * The chunks are written using {@link Robot#broadcastChunk(int, int)} so that the change is logged.
+     */
+    static void addWall(OfflineWorld world, int row, int chunks) throws GameActionException {
+        int chunksPerRow = Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE;
+        int center = Robot.snapToNode(new MapLocation((world.minX + world.maxX) * 0.5f, (world.minY + world.maxY) * 0.5f));
+        int cy = center / Robot.PATHFINDING_WORLD_WIDTH / Robot.PATHFINDING_CHUNK_SIZE;
+        int cx0 = (center % Robot.PATHFINDING_WORLD_WIDTH) / Robot.PATHFINDING_CHUNK_SIZE - chunks / 2;
+        int mask = 0xF << (row * Robot.PATHFINDING_CHUNK_SIZE);
+        for (int cx = cx0; cx < cx0 + chunks; cx++) {
+            int index = cy * chunksPerRow + cx;
+            Robot.broadcastChunk(index, world.broadcast[Robot.PATHFINDING + index] | mask);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package bot;
+
+import battlecode.common.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SymmetryTest {
+
+	private OfflineWorld world;
+
+	@Before
+	public void setUp() throws Exception {
+		world = RandomWorlds.create(RobotType.SOLDIER, 0, 0, 0, 60, 1);
+		world.install();
+	}
+
+	@Test
+	public void testDetectsTransforms() {
+		MapLocation[] ours = { new MapLocation(10, 20), new MapLocation(30, 45) };
+		Symmetry.init(ours, new MapLocation[] { new MapLocation(70, 55), new MapLocation(90, 80) });
+		assertEquals(Symmetry.ROTATION, Symmetry.candidates);
+		assertEquals(new MapLocation(50, 50), Symmetry.center);
+
+		Symmetry.init(ours, new MapLocation[] { new MapLocation(90, 20), new MapLocation(70, 45) });
+		assertEquals(Symmetry.REFLECT_X, Symmetry.candidates);
+
+		Symmetry.init(ours, new MapLocation[] { new MapLocation(20, 20), new MapLocation(30, 45) });
+		assertEquals(0, Symmetry.candidates);
+	}
+
+	@Test
+	public void testTwinChunksMirrorEveryNode() {
+		// A single pair of archons always fits a rotation
+		assertEquals(Symmetry.ROTATION, Symmetry.candidates);
+
+		for (int transform : new int[] { Symmetry.ROTATION, Symmetry.REFLECT_X, Symmetry.REFLECT_Y }) {
+			Symmetry.candidates = transform;
+			for (int chunk : new int[] { 0, 37, 312, 400, 624 }) {
+				int twin = Symmetry.twinChunk(chunk);
+				for (int bit = 0; bit < 16; bit++) {
+					MapLocation node = Robot.nodePosition(chunk % 25 * 4 + bit % 4, chunk / 25 * 4 + bit / 4);
+					float x = transform == Symmetry.REFLECT_Y ? node.x : 2 * Symmetry.center.x - node.x;
+					float y = transform == Symmetry.REFLECT_X ? node.y : 2 * Symmetry.center.y - node.y;
+					int mirrored = Robot.snapToNode(new MapLocation(x, y));
+					int mirroredChunk = (mirrored / 100 / 4) * 25 + (mirrored % 100) / 4;
+					int mirroredBit = (mirrored / 100 % 4) * 4 + mirrored % 100 % 4;
+					assertEquals(mirroredChunk, twin);
+					assertEquals(1 << mirroredBit, Symmetry.mirrorNodes(1 << bit));
+					// The stamps of the quadrants move with their nodes
+					int quadrant = bit / 8 * 2 + bit % 4 / 2;
+					int mirroredQuadrant = mirroredBit / 8 * 2 + mirroredBit % 4 / 2;
+					assertEquals(1 << (8 * mirroredQuadrant), Symmetry.mirrorAges(1 << (8 * quadrant)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMirrorsEdgesAlongAxesAllTransformsFlip() {
+		Symmetry.candidates = Symmetry.ROTATION | Symmetry.REFLECT_X;
+		assertTrue(Symmetry.mirrorsEdge(0));
+		assertTrue(Symmetry.mirrorsEdge(2));
+		assertFalse(Symmetry.mirrorsEdge(1));
+		assertFalse(Symmetry.mirrorsEdge(3));
+	}
+}
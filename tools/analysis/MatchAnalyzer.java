@@ -0,0 +1,199 @@
+package analysis;
+
+import battlecode.common.RobotType;
+import battlecode.schema.*;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Converts .bc17 match files to per round CSV files.
+ * <p>
+ * Usage: {@code java analysis.MatchAnalyzer <output directory> <match file>...}
+ * <p>
+ * For every match file two files are written to the output directory:
+ * <pre>
+ * name.rounds.csv  match,round,team,bullets,victoryPoints,trees,bulletsInFlight, and count,bytecodes,atLimit for each robot type
+ * name.robots.csv  match,round,id,team,type,bytecodes
+ * </pre>
+ * where atLimit is the number of robots of that type that used all of their bytecodes in that round.
+ * <p>
+ * Match files are gzipped flatbuffers, which can only be read with random access. The file is decompressed
+ * to a temporary file which is memory mapped, and the events are then read one at a time. Only the pages
+ * for the current round are in memory at any time, no matter how long the game is.
+ */
+public class MatchAnalyzer {
+    private static final RobotType[] robotTypes = RobotType.values();
+    /** Team id of neutral bodies in match files, the players are 1 and 2 */
+    private static final int NEUTRAL = 0;
+
+    private final PrintWriter rounds;
+    private final PrintWriter robots;
+
+    /** Team and type of all bodies that are alive, by id */
+    private final Map<Integer, Integer> teams = new HashMap<>();
+    private final Map<Integer, Byte> types = new HashMap<>();
+    private int bulletsInFlight;
+    private int matchIndex = -1;
+
+    private final int[][] unitCounts = new int[3][robotTypes.length];
+    private final long[][] bytecodes = new long[3][robotTypes.length];
+    private final int[][] atLimit = new int[3][robotTypes.length];
+    private final int[] trees = new int[3];
+
+    MatchAnalyzer(PrintWriter rounds, PrintWriter robots) {
+        this.rounds = rounds;
+        this.robots = robots;
+
+        rounds.print("match,round,team,bullets,victoryPoints,trees,bulletsInFlight");
+        for (RobotType type : robotTypes) {
+            String name = type.name().toLowerCase();
+            rounds.print("," + name + "Count," + name + "Bytecodes," + name + "AtLimit");
+        }
+        rounds.println();
+        robots.println("match,round,id,team,type,bytecodes");
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path outputDir = Paths.get(args[0]);
+        Files.createDirectories(outputDir);
+
+        for (int i = 1; i < args.length; i++) {
+            Path matchFile = Paths.get(args[i]);
+            String name = matchFile.getFileName().toString().replaceAll("\\.bc17$", "");
+            try (PrintWriter rounds = new PrintWriter(Files.newBufferedWriter(outputDir.resolve(name + ".rounds.csv")));
+                 PrintWriter robots = new PrintWriter(Files.newBufferedWriter(outputDir.resolve(name + ".robots.csv")))) {
+                new MatchAnalyzer(rounds, robots).analyze(matchFile);
+            }
+            System.out.println("Wrote " + outputDir.resolve(name + ".rounds.csv") + " and " + outputDir.resolve(name + ".robots.csv"));
+        }
+    }
+
+    void analyze(Path matchFile) throws IOException {
+        Path decompressed = Files.createTempFile("match", ".fb");
+        try {
+            try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(matchFile)))) {
+                Files.copy(in, decompressed, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            try (FileChannel channel = FileChannel.open(decompressed)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                GameWrapper game = GameWrapper.getRootAsGameWrapper(buffer);
+                EventWrapper event = new EventWrapper();
+                for (int i = 0; i < game.eventsLength(); i++) {
+                    game.events(event, i);
+                    switch (event.eType()) {
+                        case Event.MatchHeader:
+                            onMatchHeader((MatchHeader)event.e(new MatchHeader()));
+                            break;
+                        case Event.Round:
+                            onRound((Round)event.e(new Round()));
+                            break;
+                    }
+                }
+            }
+        } finally {
+            Files.delete(decompressed);
+        }
+    }
+
+    private void onMatchHeader(MatchHeader header) {
+        matchIndex++;
+        teams.clear();
+        types.clear();
+        bulletsInFlight = 0;
+
+        // The initial archons, and the neutral trees which are stored separately
+        GameMap map = header.map();
+        SpawnedBodyTable bodies = map.bodies();
+        if (bodies != null) spawn(bodies);
+
+        NeutralTreeTable neutralTrees = map.trees();
+        if (neutralTrees != null) {
+            for (int i = 0; i < neutralTrees.robotIDsLength(); i++) {
+                teams.put(neutralTrees.robotIDs(i), NEUTRAL);
+                types.put(neutralTrees.robotIDs(i), BodyType.TREE_NEUTRAL);
+            }
+        }
+    }
+
+    private void spawn(SpawnedBodyTable bodies) {
+        for (int i = 0; i < bodies.robotIDsLength(); i++) {
+            teams.put(bodies.robotIDs(i), (int)bodies.teamIDs(i));
+            types.put(bodies.robotIDs(i), bodies.types(i));
+        }
+    }
+
+    private void onRound(Round round) {
+        SpawnedBodyTable spawned = round.spawnedBodies();
+        if (spawned != null) spawn(spawned);
+
+        SpawnedBulletTable bullets = round.spawnedBullets();
+        if (bullets != null) bulletsInFlight += bullets.robotIDsLength();
+        bulletsInFlight -= round.diedBulletIDsLength();
+
+        for (int[] counts : unitCounts) Arrays.fill(counts, 0);
+        for (long[] counts : bytecodes) Arrays.fill(counts, 0);
+        for (int[] counts : atLimit) Arrays.fill(counts, 0);
+        Arrays.fill(trees, 0);
+
+        for (Map.Entry<Integer, Byte> body : types.entrySet()) {
+            int team = teams.get(body.getKey());
+            RobotType type = robotType(body.getValue());
+            if (type != null) {
+                unitCounts[team][type.ordinal()]++;
+            } else if (body.getValue() == BodyType.TREE_BULLET || body.getValue() == BodyType.TREE_NEUTRAL) {
+                trees[team]++;
+            }
+        }
+
+        for (int i = 0; i < round.bytecodeIDsLength(); i++) {
+            int id = round.bytecodeIDs(i);
+            int used = round.bytecodesUsed(i);
+            Byte bodyType = types.get(id);
+            RobotType type = bodyType != null ? robotType(bodyType) : null;
+            if (type == null) continue;
+
+            int team = teams.get(id);
+            bytecodes[team][type.ordinal()] += used;
+            if (used >= type.bytecodeLimit) atLimit[team][type.ordinal()]++;
+            robots.println(matchIndex + "," + round.roundID() + "," + id + "," + teamName(team) + "," + type + "," + used);
+        }
+
+        for (int i = 0; i < round.teamIDsLength(); i++) {
+            int team = round.teamIDs(i);
+            rounds.print(matchIndex + "," + round.roundID() + "," + teamName(team) + "," + round.teamBullets(i) + "," + round.teamVictoryPoints(i) + "," + trees[team] + "," + bulletsInFlight);
+            for (int t = 0; t < robotTypes.length; t++) {
+                rounds.print("," + unitCounts[team][t] + "," + bytecodes[team][t] + "," + atLimit[team][t]);
+            }
+            rounds.println();
+        }
+
+        // Bodies that died are removed after the round so that their last bytecode count is included
+        for (int i = 0; i < round.diedIDsLength(); i++) {
+            teams.remove(round.diedIDs(i));
+            types.remove(round.diedIDs(i));
+        }
+    }
+
+    private static RobotType robotType(byte bodyType) {
+        String name = BodyType.name(bodyType);
+        for (RobotType type : robotTypes) {
+            if (type.name().equals(name)) return type;
+        }
+        return null;
+    }
+
+    private static String teamName(int team) {
+        return team == 1 ? "A" : team == 2 ? "B" : "NEUTRAL";
+    }
+}
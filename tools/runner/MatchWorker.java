@@ -0,0 +1,211 @@
+package runner;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Long lived process that runs matches back to back, so that a tournament does not have to start a new JVM for every match.
+ * <p>
+ * Usage: {@code java runner.MatchWorker <engine jar>}
+ * <p>
+ * Reads one match per line from stdin, as space separated key=value pairs:
+ * <pre>
+ * teamA=tag teamB=tag map=Shrine seed=0 dnaA=1.5,2,0.3 dnaB= profile=50 snapshot=
+ * </pre>
+ * where the teams are directories in backups/ and the dna values are passed to the bots as the genetic.N properties.
+ * The optional profile and snapshot values become bc.testing.profile and bc.testing.snapshot, and are unset when empty.
+ * Everything the engine and the bots print is forwarded to stdout as usual, followed by one JSON line with the result:
+ * <pre>
+ * {"map":"Shrine","seed":0,"winner":"A","round":1234,"reason":"by destroying all enemy robots","seconds":3.2}
+ * </pre>
+ * or a JSON line with an "error" field if the match could not be run.
+ * <p>
+ * The engine is loaded by a new class loader for every match. The engine in turn loads the bots with
+ * its own class loaders, so no static state survives from one match to the next.
+ */
+public class MatchWorker {
+    private static final Pattern winPattern = Pattern.compile("bot \\(([AB])\\) wins \\(round (\\d+)\\)");
+    private static final Pattern reasonPattern = Pattern.compile("Reason: The winning team won ([^\\n.]+)");
+
+    private static String winner;
+    private static int winRound;
+    private static String reason;
+
+    public static void main(String[] args) throws Exception {
+        URL engineJar = new File(args[0]).toURI().toURL();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new LineScanner(out), true, "UTF-8"));
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            Map<String, String> match = parseDescriptor(line);
+            String result;
+            try {
+                result = runMatch(engineJar, match);
+            } catch (Throwable e) {
+                Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                result = "{\"map\":" + json(match.get("map")) + ",\"error\":" + json(String.valueOf(cause)) + "}";
+            }
+
+            System.out.flush();
+            out.println(result);
+            out.flush();
+        }
+    }
+
+    static Map<String, String> parseDescriptor(String line) {
+        Map<String, String> match = new HashMap<>();
+        for (String token : line.split("\\s+")) {
+            int eq = token.indexOf('=');
+            if (eq == -1) throw new IllegalArgumentException("Expected key=value but found " + token);
+            match.put(token.substring(0, eq), token.substring(eq + 1));
+        }
+        return match;
+    }
+
+    private static String runMatch(URL engineJar, Map<String, String> match) throws Exception {
+        String teamA = match.get("teamA");
+        String teamB = match.get("teamB");
+        String map = match.get("map");
+        String seed = match.getOrDefault("seed", "0");
+
+        // The bots read their properties when they are loaded, so old genetic values must not be left behind
+        List<String> stale = new ArrayList<>();
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.contains(".genetic.")) stale.add(key);
+        }
+        for (String key : stale) System.clearProperty(key);
+
+        System.setProperty("bc.server.mode", "headless");
+        System.setProperty("bc.server.map-path", "maps");
+        System.setProperty("bc.server.debug", "false");
+        System.setProperty("bc.game.team-a", "bot");
+        System.setProperty("bc.game.team-b", "bot");
+        System.setProperty("bc.game.team-a.url", new File("backups/" + teamA).getAbsolutePath());
+        System.setProperty("bc.game.team-b.url", new File("backups/" + teamB).getAbsolutePath());
+        System.setProperty("bc.game.maps", map);
+        System.setProperty("bc.testing.seed", seed);
+        System.setProperty("bc.server.save-file", "matches/" + teamA + "-vs-" + teamB + "-on-" + map + "-seed-" + seed + ".bc17");
+        setGenetic("bc.testing.team-a.genetic.", match.get("dnaA"));
+        setGenetic("bc.testing.team-b.genetic.", match.get("dnaB"));
+        setOrClear("bc.testing.profile", match.get("profile"));
+        setOrClear("bc.testing.snapshot", match.get("snapshot"));
+
+        winner = null;
+        reason = null;
+        long start = System.nanoTime();
+
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader engine = new URLClassLoader(new URL[]{engineJar}, ClassLoader.getSystemClassLoader().getParent())) {
+            Thread.currentThread().setContextClassLoader(engine);
+            Method main = engine.loadClass("battlecode.server.Main").getMethod("main", String[].class);
+            main.invoke(null, (Object)new String[]{"-c=-"});
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+        System.out.flush();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (winner == null) {
+            return "{\"map\":" + json(map) + ",\"seed\":" + seed + ",\"error\":\"no winner reported\"}";
+        }
+        return "{\"map\":" + json(map) + ",\"seed\":" + seed + ",\"winner\":" + json(winner) + ",\"round\":" + winRound +
+                ",\"reason\":" + json(reason) + ",\"seconds\":" + String.format(Locale.ROOT, "%.2f", seconds) + "}";
+    }
+
+    private static void setGenetic(String prefix, String dna) {
+        if (dna == null || dna.isEmpty()) return;
+
+        String[] values = dna.split(",");
+        for (int i = 0; i < values.length; i++) {
+            System.setProperty(prefix + i, values[i]);
+        }
+    }
+
+    private static void setOrClear(String key, String value) {
+        if (value == null || value.isEmpty()) System.clearProperty(key);
+        else System.setProperty(key, value);
+    }
+
+    static String json(String value) {
+        if (value == null) return "null";
+
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                default:
+                    if (c < 0x20) builder.append(String.format("\\u%04x", (int)c));
+                    else builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Forwards everything to stdout and looks for the lines in which the engine reports the winner
+     */
+    private static class LineScanner extends OutputStream {
+        private final PrintStream out;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        LineScanner(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            out.write(b);
+            if (b == '\n') {
+                scan(new String(line.toByteArray(), StandardCharsets.UTF_8));
+                line.reset();
+            } else {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public void flush() {
+            out.flush();
+        }
+
+        private void scan(String text) {
+            Matcher win = winPattern.matcher(text);
+            if (win.find()) {
+                winner = win.group(1);
+                winRound = Integer.parseInt(win.group(2));
+            }
+
+            Matcher why = reasonPattern.matcher(text);
+            if (why.find()) reason = why.group(1);
+        }
+    }
+}